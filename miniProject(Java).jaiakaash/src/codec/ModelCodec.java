@@ -0,0 +1,75 @@
+package codec;
+
+import models.ActivityEvent;
+import models.Comment;
+import models.Task;
+import models.User;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+// Self-contained single-record payloads (each with its own version and dictionary),
+// as stored in write-ahead log records
+public final class ModelCodec {
+
+    private ModelCodec() {
+    }
+
+    // ---------------- Task ----------------
+    public static byte[] encodeTask(Task t) {
+        return new ModelWriter().writeTask(t).toByteArray();
+    }
+
+    public static Task decodeTask(byte[] payload) {
+        return reader(payload).readTask();
+    }
+
+    // ---------------- User ----------------
+    public static byte[] encodeUser(User u) {
+        return new ModelWriter().writeUser(u).toByteArray();
+    }
+
+    public static User decodeUser(byte[] payload) {
+        return reader(payload).readUser();
+    }
+
+    public static byte[] encodeUuid(UUID id) {
+        return new ModelWriter().writeUuid(id).toByteArray();
+    }
+
+    public static UUID decodeUuid(byte[] payload) {
+        return reader(payload).readUuid();
+    }
+
+    // ---------------- ActivityEvent ----------------
+    public static byte[] encodeActivity(ActivityEvent e) {
+        return new ModelWriter().writeActivity(e).toByteArray();
+    }
+
+    public static ActivityEvent decodeActivity(byte[] payload) {
+        return reader(payload).readActivity();
+    }
+
+    public static ActivityEvent decodeActivity(ByteBuffer payload) {
+        return new ModelReader(payload).readActivity();
+    }
+
+    // ---------------- Comment (with its task id) ----------------
+    public static byte[] encodeComment(UUID taskId, Comment c) {
+        return new ModelWriter().writeUuid(taskId).writeComment(c).toByteArray();
+    }
+
+    public static UUID decodeCommentTaskId(byte[] payload) {
+        return reader(payload).readUuid();
+    }
+
+    public static Comment decodeComment(byte[] payload) {
+        ModelReader reader = reader(payload);
+        reader.readUuid(); // task id
+        return reader.readComment();
+    }
+
+    private static ModelReader reader(byte[] payload) {
+        return new ModelReader(ByteBuffer.wrap(payload));
+    }
+}
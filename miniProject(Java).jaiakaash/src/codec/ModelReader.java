@@ -0,0 +1,155 @@
+package codec;
+
+import enums.ActivityType;
+import enums.Priority;
+import enums.Role;
+import enums.Status;
+import models.ActivityEvent;
+import models.Comment;
+import models.Task;
+import models.User;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// Decodes a stream written by ModelWriter, reading straight from the source buffer
+// (which may be a mapped file region) and advancing its position. Models must be read
+// back in the order they were written, since they share the stream's string dictionary.
+public final class ModelReader {
+
+    private static final Status[] STATUSES = Status.values();
+    private static final Priority[] PRIORITIES = Priority.values();
+    private static final Role[] ROLES = Role.values();
+    private static final ActivityType[] ACTIVITY_TYPES = ActivityType.values();
+
+    private final ByteBuffer buffer;
+    private final List<String> dictionary = new ArrayList<>();
+
+    public ModelReader(ByteBuffer source) {
+        this.buffer = source;
+        int version = readVarint();
+        if (version != ModelWriter.FORMAT_VERSION) {
+            throw new IllegalStateException("Unsupported model format version " + version);
+        }
+    }
+
+    // ---------------- Models ----------------
+    public Task readTask() {
+        Task.Builder b = Task.builder()
+                .id(readUuid())
+                .version(readVarint())
+                .title(readString())
+                .description(readString())
+                .status(readEnum(STATUSES))
+                .priority(readEnum(PRIORITIES))
+                .createdBy(readUser())
+                .assignedTo(readUser())
+                .dueDate(readInstant());
+        int tagCount = readVarint();
+        List<String> tags = new ArrayList<>(tagCount);
+        for (int i = 0; i < tagCount; i++) {
+            tags.add(readString());
+        }
+        return b.tags(tags)
+                .commentCount(readVarint())
+                .createdAt(readInstant())
+                .updatedAt(readInstant())
+                .build();
+    }
+
+    public User readUser() {
+        if (buffer.get() == 0) {
+            return null;
+        }
+        return User.builder()
+                .id(readUuid())
+                .name(readString())
+                .email(readString())
+                .role(readEnum(ROLES))
+                .createdAt(readInstant())
+                .active(buffer.get() != 0)
+                .build();
+    }
+
+    public Comment readComment() {
+        return Comment.builder()
+                .id(readUuid())
+                .author(readUser())
+                .message(readString())
+                .createdAt(readInstant())
+                .build();
+    }
+
+    public ActivityEvent readActivity() {
+        return ActivityEvent.builder()
+                .eventId(readUuid())
+                .taskId(readUuid())
+                .activityType(readEnum(ACTIVITY_TYPES))
+                .performedBy(readUser())
+                .timestamp(readInstant())
+                .details(readString())
+                .build();
+    }
+
+    public UUID readUuid() {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    // ---------------- Primitives ----------------
+    private int readVarint() {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    private String readString() {
+        int ref = readVarint();
+        if (ref == ModelWriter.NULL_STRING) {
+            return null;
+        }
+        if (ref != ModelWriter.LITERAL_STRING) {
+            return dictionary.get(ref - 2);
+        }
+        int length = readVarint();
+        String s;
+        if (buffer.hasArray()) {
+            s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+        }
+        if (length <= ModelWriter.MAX_DICTIONARY_BYTES) {
+            dictionary.add(s);
+        }
+        return s;
+    }
+
+    private <E extends Enum<E>> E readEnum(E[] values) {
+        int ordinal = buffer.get();
+        return ordinal < 0 ? null : values[ordinal];
+    }
+
+    public Instant readInstant() {
+        long nanos = buffer.getLong();
+        if (nanos == ModelWriter.NULL_INSTANT) {
+            return null;
+        }
+        if (nanos == ModelWriter.WIDE_INSTANT) {
+            long seconds = buffer.getLong();
+            return Instant.ofEpochSecond(seconds, buffer.getInt());
+        }
+        return Instant.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L), Math.floorMod(nanos, 1_000_000_000L));
+    }
+}
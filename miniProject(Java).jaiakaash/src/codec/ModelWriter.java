@@ -0,0 +1,208 @@
+package codec;
+
+import models.ActivityEvent;
+import models.Comment;
+import models.Task;
+import models.User;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+// Encodes models into a ByteBuffer. A stream starts with the format version and may
+// hold any number of models; strings repeated within one stream are written once and
+// then referenced through a dictionary, so encode related records (a snapshot segment,
+// a batch) with one writer and independent records (log entries) with one writer each.
+//
+// Encoding:
+//   varint        unsigned LEB128 (lengths, counts, versions, string references)
+//   UUID          two longs
+//   enum          ordinal byte, -1 = null
+//   Instant       epoch nanoseconds as a long; Long.MIN_VALUE = null; outside the range a
+//                 long covers (years 1678..2261), WIDE_INSTANT then epoch seconds (long)
+//                 and nanos (int)
+//   String        varint ref: 0 = null, 1 = literal (varint length + UTF-8), n = dictionary[n - 2]
+//   User          presence byte, then id, name, email, role, createdAt, active byte
+public final class ModelWriter {
+
+    // Streams of any other version are rejected by ModelReader
+    public static final int FORMAT_VERSION = 2;
+
+    // Longer strings are written as literals without entering the dictionary
+    static final int MAX_DICTIONARY_BYTES = 256;
+
+    static final int NULL_STRING = 0;
+    static final int LITERAL_STRING = 1;
+    static final long NULL_INSTANT = Long.MIN_VALUE;
+    static final long WIDE_INSTANT = Long.MIN_VALUE + 1;
+
+    private ByteBuffer buffer;
+    private final boolean growable;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+
+    // Writes into a growable heap buffer
+    public ModelWriter() {
+        this(ByteBuffer.allocate(256), true);
+    }
+
+    // Writes into target from its current position (a mapped file region, a direct
+    // buffer, ...); throws BufferOverflowException when it runs out of room
+    public ModelWriter(ByteBuffer target) {
+        this(target, false);
+    }
+
+    private ModelWriter(ByteBuffer buffer, boolean growable) {
+        this.buffer = buffer;
+        this.growable = growable;
+        writeVarint(FORMAT_VERSION);
+    }
+
+    // ---------------- Models ----------------
+    public ModelWriter writeTask(Task t) {
+        writeUuid(t.getId());
+        writeVarint(t.getVersion());
+        writeString(t.getTitle());
+        writeString(t.getDescription());
+        writeEnum(t.getStatus());
+        writeEnum(t.getPriority());
+        writeUser(t.getCreatedBy());
+        writeUser(t.getAssignedTo().orElse(null));
+        writeInstant(t.getDueDate().orElse(null));
+        writeVarint(t.getTags().size());
+        for (String tag : t.getTags()) {
+            writeString(tag);
+        }
+        writeVarint(t.getCommentCount());
+        writeInstant(t.getCreatedAt());
+        writeInstant(t.getUpdatedAt());
+        return this;
+    }
+
+    public ModelWriter writeUser(User u) {
+        ensure(1);
+        buffer.put((byte) (u == null ? 0 : 1));
+        if (u == null) {
+            return this;
+        }
+        writeUuid(u.getId());
+        writeString(u.getName());
+        writeString(u.getEmail());
+        writeEnum(u.getRole());
+        writeInstant(u.getCreatedAt());
+        ensure(1);
+        buffer.put((byte) (u.isActive() ? 1 : 0));
+        return this;
+    }
+
+    public ModelWriter writeComment(Comment c) {
+        writeUuid(c.getId());
+        writeUser(c.getAuthor());
+        writeString(c.getMessage());
+        writeInstant(c.getCreatedAt());
+        return this;
+    }
+
+    public ModelWriter writeActivity(ActivityEvent e) {
+        writeUuid(e.getEventId());
+        writeUuid(e.getTaskId());
+        writeEnum(e.getActivityType());
+        writeUser(e.getPerformedBy());
+        writeInstant(e.getTimestamp());
+        writeString(e.getDetails());
+        return this;
+    }
+
+    public ModelWriter writeUuid(UUID id) {
+        ensure(16);
+        buffer.putLong(id.getMostSignificantBits());
+        buffer.putLong(id.getLeastSignificantBits());
+        return this;
+    }
+
+    // ---------------- Output ----------------
+    // Bytes written so far by this writer
+    public int size() {
+        return buffer.position();
+    }
+
+    // The written bytes as a read-only view over the writer's buffer (no copy)
+    public ByteBuffer toByteBuffer() {
+        ByteBuffer view = buffer.duplicate();
+        view.flip();
+        return view.asReadOnlyBuffer();
+    }
+
+    public byte[] toByteArray() {
+        ByteBuffer view = toByteBuffer();
+        byte[] bytes = new byte[view.remaining()];
+        view.get(bytes);
+        return bytes;
+    }
+
+    // ---------------- Primitives ----------------
+    private void writeVarint(int value) {
+        ensure(5);
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private void writeString(String s) {
+        if (s == null) {
+            writeVarint(NULL_STRING);
+            return;
+        }
+        Integer index = dictionary.get(s);
+        if (index != null) {
+            writeVarint(index + 2);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(LITERAL_STRING);
+        writeVarint(bytes.length);
+        ensure(bytes.length);
+        buffer.put(bytes);
+        if (bytes.length <= MAX_DICTIONARY_BYTES) {
+            dictionary.put(s, dictionary.size());
+        }
+    }
+
+    private void writeEnum(Enum<?> value) {
+        ensure(1);
+        buffer.put((byte) (value == null ? -1 : value.ordinal()));
+    }
+
+    public ModelWriter writeInstant(Instant instant) {
+        ensure(8);
+        if (instant == null) {
+            buffer.putLong(NULL_INSTANT);
+            return this;
+        }
+        long seconds = instant.getEpochSecond();
+        int nanos = instant.getNano();
+        // seconds * 1e9 + nanos fits in a long, clear of the two markers
+        if (seconds > Long.MIN_VALUE / 1_000_000_000L && seconds < Long.MAX_VALUE / 1_000_000_000L) {
+            buffer.putLong(seconds * 1_000_000_000L + nanos);
+        } else {
+            buffer.putLong(WIDE_INSTANT);
+            ensure(8 + 4);
+            buffer.putLong(seconds).putInt(nanos);
+        }
+        return this;
+    }
+
+    private void ensure(int bytes) {
+        if (!growable || buffer.remaining() >= bytes) {
+            return;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+    }
+}
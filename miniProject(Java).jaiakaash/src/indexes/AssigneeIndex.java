@@ -0,0 +1,70 @@
+package indexes;
+
+import enums.Status;
+
+import java.util.*;
+
+// Assignee user id -> ids of tasks whose latest version is assigned to that user
+public class AssigneeIndex {
+
+    private final Map<UUID, Set<UUID>> assigned = new LinkedHashMap<>();
+
+    // Subset of the above whose status is OPEN or IN_PROGRESS
+    private final Map<UUID, Set<UUID>> active = new HashMap<>();
+
+    public void update(UUID taskId,
+                       UUID oldAssignee, Status oldStatus,
+                       UUID newAssignee, Status newStatus) {
+
+        if (!Objects.equals(oldAssignee, newAssignee)) {
+            remove(assigned, oldAssignee, taskId);
+            add(assigned, newAssignee, taskId);
+        }
+
+        boolean wasActive = isActive(oldStatus);
+        boolean nowActive = isActive(newStatus);
+        if (!Objects.equals(oldAssignee, newAssignee) || wasActive != nowActive) {
+            if (wasActive) {
+                remove(active, oldAssignee, taskId);
+            }
+            if (nowActive) {
+                add(active, newAssignee, taskId);
+            }
+        }
+    }
+
+    public Set<UUID> assignedTo(UUID userId) {
+        return assigned.getOrDefault(userId, Set.of());
+    }
+
+    public Set<UUID> activeFor(UUID userId) {
+        return active.getOrDefault(userId, Set.of());
+    }
+
+    public Set<UUID> assignees() {
+        return assigned.keySet();
+    }
+
+    private static boolean isActive(Status status) {
+        return status == Status.OPEN || status == Status.IN_PROGRESS;
+    }
+
+    private static void add(Map<UUID, Set<UUID>> map, UUID userId, UUID taskId) {
+        if (userId != null) {
+            map.computeIfAbsent(userId, u -> new LinkedHashSet<>()).add(taskId);
+        }
+    }
+
+    private static void remove(Map<UUID, Set<UUID>> map, UUID userId, UUID taskId) {
+        if (userId == null) {
+            return;
+        }
+        Set<UUID> ids = map.get(userId);
+        if (ids != null) {
+            ids.remove(taskId);
+            if (ids.isEmpty()) {
+                map.remove(userId);
+            }
+        }
+    }
+}
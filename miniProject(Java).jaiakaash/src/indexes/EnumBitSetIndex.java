@@ -0,0 +1,52 @@
+package indexes;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumMap;
+
+// Posting sets per enum value, stored as bitsets over dense task ordinals
+public class EnumBitSetIndex<E extends Enum<E>> {
+
+    private final EnumMap<E, BitSet> postings;
+
+    public EnumBitSetIndex(Class<E> type) {
+        this.postings = new EnumMap<>(type);
+        for (E value : type.getEnumConstants()) {
+            postings.put(value, new BitSet());
+        }
+    }
+
+    // Move an ordinal from its old value to its new one (old is null for new tasks)
+    public void update(int ordinal, E oldValue, E newValue) {
+        if (oldValue == newValue) {
+            return;
+        }
+        if (oldValue != null) {
+            postings.get(oldValue).clear(ordinal);
+        }
+        if (newValue != null) {
+            postings.get(newValue).set(ordinal);
+        }
+    }
+
+    // Union of the posting sets of the given values (a fresh bitset)
+    public BitSet union(Collection<E> values) {
+        BitSet result = new BitSet();
+        for (E value : values) {
+            result.or(postings.get(value));
+        }
+        return result;
+    }
+
+    public int count(E value) {
+        return postings.get(value).cardinality();
+    }
+
+    public int count(Collection<E> values) {
+        int total = 0;
+        for (E value : values) {
+            total += count(value);
+        }
+        return total;
+    }
+}
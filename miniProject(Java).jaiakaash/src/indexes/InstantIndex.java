@@ -0,0 +1,65 @@
+package indexes;
+
+import java.time.Instant;
+import java.util.*;
+
+// Ordered index: instant -> ids of tasks keyed at that instant (one key per task)
+public class InstantIndex {
+
+    private final NavigableMap<Instant, Set<UUID>> entries = new TreeMap<>();
+    private int size;
+
+    // Re-key a task (null = not indexed)
+    public void update(UUID taskId, Instant oldKey, Instant newKey) {
+        if (Objects.equals(oldKey, newKey)) {
+            return;
+        }
+        if (oldKey != null) {
+            Set<UUID> ids = entries.get(oldKey);
+            if (ids != null && ids.remove(taskId)) {
+                size--;
+                if (ids.isEmpty()) {
+                    entries.remove(oldKey);
+                }
+            }
+        }
+        if (newKey != null) {
+            if (entries.computeIfAbsent(newKey, k -> new LinkedHashSet<>()).add(taskId)) {
+                size++;
+            }
+        }
+    }
+
+    // Ids keyed strictly before the given instant, earliest first
+    public List<UUID> before(Instant instant) {
+        return flatten(entries.headMap(instant, false));
+    }
+
+    // Ids keyed within [from, to], earliest first
+    public List<UUID> between(Instant from, Instant to) {
+        if (from.isAfter(to)) {
+            return new ArrayList<>();
+        }
+        return flatten(entries.subMap(from, true, to, true));
+    }
+
+    public int countBefore(Instant instant) {
+        int count = 0;
+        for (Set<UUID> ids : entries.headMap(instant, false).values()) {
+            count += ids.size();
+        }
+        return count;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static List<UUID> flatten(Map<Instant, Set<UUID>> range) {
+        List<UUID> result = new ArrayList<>();
+        for (Set<UUID> ids : range.values()) {
+            result.addAll(ids);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,66 @@
+package indexes;
+
+import java.util.*;
+
+// Inverted index: tag -> ids of tasks whose latest version carries the tag
+public class TagIndex {
+
+    private final Map<String, Set<UUID>> postings = new HashMap<>();
+
+    public void update(UUID taskId, Collection<String> oldTags, Collection<String> newTags) {
+        Set<String> before = oldTags == null ? Set.of() : new HashSet<>(oldTags);
+        Set<String> after = newTags == null ? Set.of() : new HashSet<>(newTags);
+
+        for (String tag : before) {
+            if (!after.contains(tag)) {
+                Set<UUID> ids = postings.get(tag);
+                ids.remove(taskId);
+                if (ids.isEmpty()) {
+                    postings.remove(tag);
+                }
+            }
+        }
+
+        for (String tag : after) {
+            if (!before.contains(tag)) {
+                postings.computeIfAbsent(tag, t -> new LinkedHashSet<>()).add(taskId);
+            }
+        }
+    }
+
+    // Ids carrying ALL given tags; intersects starting from the rarest posting list
+    public List<UUID> matchAll(Set<String> tags) {
+        List<Set<UUID>> lists = new ArrayList<>(tags.size());
+        for (String tag : tags) {
+            Set<UUID> ids = postings.get(tag);
+            if (ids == null) {
+                return new ArrayList<>();
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+
+        List<UUID> result = new ArrayList<>();
+        Set<UUID> rarest = lists.get(0);
+        outer:
+        for (UUID id : rarest) {
+            for (int i = 1; i < lists.size(); i++) {
+                if (!lists.get(i).contains(id)) {
+                    continue outer;
+                }
+            }
+            result.add(id);
+        }
+        return result;
+    }
+
+    // Upper bound on matchAll(tags).size(): the size of the rarest posting list
+    public int estimate(Set<String> tags) {
+        int min = Integer.MAX_VALUE;
+        for (String tag : tags) {
+            Set<UUID> ids = postings.get(tag);
+            min = Math.min(min, ids == null ? 0 : ids.size());
+        }
+        return min;
+    }
+}
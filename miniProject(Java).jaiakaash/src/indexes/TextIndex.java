@@ -0,0 +1,466 @@
+package indexes;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Inverted full-text index over task titles, descriptions and comments, ranked by BM25.
+//
+// Text is lower-cased and split on anything that is not a letter or digit. Each task is
+// one document; title tokens count twice. Terms sit in a sorted dictionary so a query
+// word ending in '*' matches every term with that prefix (up to MAX_EXPANSIONS terms).
+// A document matches when it contains every query word (or one of a prefix's terms).
+//
+// Each term's postings are parallel arrays of document ordinal and term frequency,
+// sorted by ordinal. Queries drive from the rarest word, scoring straight off its
+// postings, and probe the other words' postings with a galloping cursor. A prefix word's
+// expansions are summed into a dense per-document accumulator instead.
+//
+// Thread-safe: writers take the write lock, queries the read lock. Unlike the other
+// indexes this one is used directly by services, so it guards itself.
+public class TextIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int TITLE_WEIGHT = 2;
+    private static final int MAX_EXPANSIONS = 128;
+
+    // Documents containing one term
+    private static final class Postings {
+        int[] docs = new int[2];
+        int[] freqs = new int[2];
+        int size;
+
+        void add(int doc, int freq) {
+            if (size > 0 && docs[size - 1] == doc) {
+                freqs[size - 1] += freq;
+                return;
+            }
+            int at = size == 0 || docs[size - 1] < doc ? size : Arrays.binarySearch(docs, 0, size, doc);
+            if (at >= 0 && at < size) {
+                freqs[at] += freq;
+                return;
+            }
+            int insert = at >= 0 ? at : -at - 1;
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            System.arraycopy(docs, insert, docs, insert + 1, size - insert);
+            System.arraycopy(freqs, insert, freqs, insert + 1, size - insert);
+            docs[insert] = doc;
+            freqs[insert] = freq;
+            size++;
+        }
+
+        int freq(int doc) {
+            int at = Arrays.binarySearch(docs, 0, size, doc);
+            return at < 0 ? 0 : freqs[at];
+        }
+
+        // First position at or after `from` whose doc is >= doc. Gallops, so probing
+        // ascending docs costs little more than a merge.
+        int seek(int from, int doc) {
+            int step = 1;
+            int hi = from;
+            while (hi < size && docs[hi] < doc) {
+                from = hi + 1;
+                hi += step;
+                step <<= 1;
+            }
+            int at = Arrays.binarySearch(docs, from, Math.min(hi, size - 1) + 1, doc);
+            return at >= 0 ? at : -at - 1;
+        }
+    }
+
+    // Matching documents and their scores, in parallel arrays
+    private static final class Matches {
+        final int[] docs;
+        final double[] scores;
+        final int size;
+
+        Matches(int[] docs, double[] scores, int size) {
+            this.docs = docs;
+            this.scores = scores;
+            this.size = size;
+        }
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final NavigableMap<String, Postings> terms = new TreeMap<>();   // guarded by lock
+    private final Map<String, Postings> exactTerms = new HashMap<>();       // guarded by lock: same postings
+    private final Map<UUID, Integer> ordinalById = new HashMap<>();         // guarded by lock
+    private final List<UUID> idByOrdinal = new ArrayList<>();               // guarded by lock
+    private int[] docLengths = new int[16];                                 // guarded by lock
+    private long totalLength;                                               // guarded by lock
+
+    // ---------------- Updates ----------------
+    public void addTask(UUID taskId, String title, String description) {
+        Map<String, Integer> freqs = new HashMap<>();
+        count(title, TITLE_WEIGHT, freqs);
+        count(description, 1, freqs);
+        add(taskId, freqs);
+    }
+
+    public void addComment(UUID taskId, String message) {
+        Map<String, Integer> freqs = new HashMap<>();
+        count(message, 1, freqs);
+        add(taskId, freqs);
+    }
+
+    private void add(UUID taskId, Map<String, Integer> freqs) {
+        lock.writeLock().lock();
+        try {
+            int doc = ordinalFor(taskId);
+            for (Map.Entry<String, Integer> e : freqs.entrySet()) {
+                Postings postings = exactTerms.get(e.getKey());
+                if (postings == null) {
+                    postings = new Postings();
+                    exactTerms.put(e.getKey(), postings);
+                    terms.put(e.getKey(), postings);
+                }
+                postings.add(doc, e.getValue());
+                docLengths[doc] += e.getValue();
+                totalLength += e.getValue();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---------------- Queries ----------------
+    // The best `limit` matches, best first
+    public LinkedHashMap<UUID, Double> search(String query, int limit) {
+        lock.readLock().lock();
+        try {
+            return rank(match(query), limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Every match, best first
+    public LinkedHashMap<UUID, Double> searchAll(String query) {
+        return search(query, Integer.MAX_VALUE);
+    }
+
+    // Scores only the given tasks; those that do not match are left out
+    public Map<UUID, Double> score(String query, Collection<UUID> taskIds) {
+        lock.readLock().lock();
+        try {
+            List<List<Postings>> words = resolve(query);
+            Map<UUID, Double> scores = new HashMap<>();
+            if (words == null) {
+                return scores;
+            }
+            for (UUID id : taskIds) {
+                Integer doc = ordinalById.get(id);
+                if (doc == null) {
+                    continue;
+                }
+                double score = 0;
+                boolean matched = true;
+                for (List<Postings> word : words) {
+                    double s = score(word, doc);
+                    if (s == 0) {
+                        matched = false;
+                        break;
+                    }
+                    score += s;
+                }
+                if (matched) {
+                    scores.put(id, score);
+                }
+            }
+            return scores;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Upper bound on the number of matches: postings of the rarest query word
+    public int estimate(String query) {
+        lock.readLock().lock();
+        try {
+            List<List<Postings>> words = resolve(query);
+            if (words == null) {
+                return 0;
+            }
+            int best = Integer.MAX_VALUE;
+            for (List<Postings> word : words) {
+                best = Math.min(best, size(word));
+            }
+            return best == Integer.MAX_VALUE ? 0 : best;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return idByOrdinal.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Lower-cased runs of letters and digits
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    // ---------------- Internals ----------------
+    // Caller holds the write lock
+    private int ordinalFor(UUID taskId) {
+        Integer doc = ordinalById.get(taskId);
+        if (doc != null) {
+            return doc;
+        }
+        int ordinal = idByOrdinal.size();
+        ordinalById.put(taskId, ordinal);
+        idByOrdinal.add(taskId);
+        if (ordinal == docLengths.length) {
+            docLengths = Arrays.copyOf(docLengths, ordinal * 2);
+        }
+        return ordinal;
+    }
+
+    private static void count(String text, int weight, Map<String, Integer> freqs) {
+        for (String token : tokenize(text)) {
+            freqs.merge(token, weight, Integer::sum);
+        }
+    }
+
+    // Caller holds the read lock. Postings per query word (a prefix word may have
+    // several); null when some word matches nothing or the query has no words.
+    private List<List<Postings>> resolve(String query) {
+        List<List<Postings>> words = new ArrayList<>();
+        for (String chunk : query.trim().split("\\s+")) {
+            List<String> tokens = tokenize(chunk);
+            for (int i = 0; i < tokens.size(); i++) {
+                String token = tokens.get(i);
+                boolean prefix = i == tokens.size() - 1 && chunk.endsWith("*");
+                List<Postings> word = new ArrayList<>(1);
+                if (prefix) {
+                    for (Postings p : terms.subMap(token, true, token + Character.MAX_VALUE, false).values()) {
+                        if (word.size() == MAX_EXPANSIONS) {
+                            break;
+                        }
+                        word.add(p);
+                    }
+                } else {
+                    Postings p = exactTerms.get(token);
+                    if (p != null) {
+                        word.add(p);
+                    }
+                }
+                if (word.isEmpty()) {
+                    return null;
+                }
+                words.add(word);
+            }
+        }
+        return words.isEmpty() ? null : words;
+    }
+
+    // Caller holds the read lock. Matching documents and their scores: the rarest word's
+    // documents are the candidates, then each other word keeps those containing it.
+    private Matches match(String query) {
+        List<List<Postings>> words = resolve(query);
+        if (words == null) {
+            return new Matches(new int[0], new double[0], 0);
+        }
+        words.sort(Comparator.comparingInt(TextIndex::size));
+
+        int n;
+        int[] docs;
+        double[] scores;
+        List<Postings> first = words.get(0);
+        if (first.size() == 1) {
+            Postings p = first.get(0);
+            double idf = idf(p);
+            n = p.size;
+            docs = Arrays.copyOf(p.docs, n);
+            scores = new double[n];
+            for (int i = 0; i < n; i++) {
+                scores[i] = termScore(idf, p.freqs[i], docs[i]);
+            }
+        } else {
+            double[] acc = accumulate(first);
+            docs = new int[size(first)];
+            scores = new double[docs.length];
+            n = 0;
+            for (int doc = 0; doc < acc.length; doc++) {
+                if (acc[doc] > 0) {
+                    docs[n] = doc;
+                    scores[n++] = acc[doc];
+                }
+            }
+        }
+
+        for (int w = 1; w < words.size() && n > 0; w++) {
+            List<Postings> word = words.get(w);
+            double[] acc = word.size() == 1 ? null : accumulate(word);
+            Postings p = word.get(0);
+            double idf = idf(p);
+            int cursor = 0;
+            int kept = 0;
+            for (int i = 0; i < n; i++) {
+                double s;
+                if (acc != null) {
+                    s = acc[docs[i]];
+                } else {
+                    cursor = p.seek(cursor, docs[i]);
+                    s = cursor < p.size && p.docs[cursor] == docs[i]
+                            ? termScore(idf, p.freqs[cursor], docs[i])
+                            : 0;
+                }
+                if (s > 0) {
+                    docs[kept] = docs[i];
+                    scores[kept] = scores[i] + s;
+                    kept++;
+                }
+            }
+            n = kept;
+        }
+
+        return new Matches(docs, scores, n);
+    }
+
+    // Caller holds the read lock. One word's score for every document, summed over its
+    // expansions; 0 where the document has none of them.
+    private double[] accumulate(List<Postings> word) {
+        double[] acc = new double[idByOrdinal.size()];
+        for (Postings p : word) {
+            double idf = idf(p);
+            for (int i = 0; i < p.size; i++) {
+                acc[p.docs[i]] += termScore(idf, p.freqs[i], p.docs[i]);
+            }
+        }
+        return acc;
+    }
+
+    // Caller holds the read lock. Top `limit` of match() by score, ties by ordinal,
+    // using a min-heap of match positions with the worst kept match on top.
+    private LinkedHashMap<UUID, Double> rank(Matches matches, int limit) {
+        int[] docs = matches.docs;
+        double[] scores = matches.scores;
+        int capacity = Math.min(matches.size, limit);
+
+        int[] heap = new int[capacity];
+        int size = 0;
+        for (int i = 0; i < matches.size; i++) {
+            if (size < capacity) {
+                heap[size] = i;
+                siftUp(heap, size++, docs, scores);
+            } else if (better(i, heap[0], docs, scores)) {
+                heap[0] = i;
+                siftDown(heap, size, docs, scores);
+            }
+        }
+
+        int[] best = new int[size];
+        for (int k = size - 1; k >= 0; k--) {
+            best[k] = heap[0];
+            heap[0] = heap[k];
+            siftDown(heap, k, docs, scores);
+        }
+        LinkedHashMap<UUID, Double> result = new LinkedHashMap<>();
+        for (int i : best) {
+            result.put(idByOrdinal.get(docs[i]), scores[i]);
+        }
+        return result;
+    }
+
+    private static boolean better(int a, int b, int[] docs, double[] scores) {
+        return scores[a] != scores[b] ? scores[a] > scores[b] : docs[a] < docs[b];
+    }
+
+    private static void siftUp(int[] heap, int at, int[] docs, double[] scores) {
+        while (at > 0) {
+            int parent = (at - 1) >>> 1;
+            if (!better(heap[parent], heap[at], docs, scores)) {
+                return;
+            }
+            swap(heap, parent, at);
+            at = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int size, int[] docs, double[] scores) {
+        int at = 0;
+        while (true) {
+            int child = 2 * at + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && better(heap[child], heap[child + 1], docs, scores)) {
+                child++;
+            }
+            if (!better(heap[at], heap[child], docs, scores)) {
+                return;
+            }
+            swap(heap, at, child);
+            at = child;
+        }
+    }
+
+    private static void swap(int[] heap, int a, int b) {
+        int t = heap[a];
+        heap[a] = heap[b];
+        heap[b] = t;
+    }
+
+    // Caller holds the read lock. BM25 contribution of one query word (summed over its
+    // expansions) to a document; 0 when the document does not contain it.
+    private double score(List<Postings> word, int doc) {
+        double score = 0;
+        for (Postings p : word) {
+            int tf = p.freq(doc);
+            if (tf > 0) {
+                score += termScore(idf(p), tf, doc);
+            }
+        }
+        return score;
+    }
+
+    // Caller holds the read lock
+    private double idf(Postings p) {
+        int docs = idByOrdinal.size();
+        return Math.log(1 + (docs - p.size + 0.5) / (p.size + 0.5));
+    }
+
+    // Caller holds the read lock. 0 when tf is 0.
+    private double termScore(double idf, int tf, int doc) {
+        if (tf == 0) {
+            return 0;
+        }
+        double avgLength = (double) totalLength / idByOrdinal.size();
+        double norm = K1 * (1 - B + B * docLengths[doc] / avgLength);
+        return idf * tf * (K1 + 1) / (tf + norm);
+    }
+
+    private static int size(List<Postings> word) {
+        int size = 0;
+        for (Postings p : word) {
+            size += p.size;
+        }
+        return size;
+    }
+}
@@ -21,7 +21,7 @@ public class Task {
     private final Optional<User> assignedTo;
     private final Optional<Instant> dueDate;
     private final List<String> tags;
-    private final List<Comment> comments;
+    private final int commentCount; // comments live in CommentRepository; this is the watermark
     private final Instant createdAt;
     private final Instant updatedAt;
 
@@ -36,7 +36,7 @@ public class Task {
         this.assignedTo = Optional.ofNullable(b.assignedTo);
         this.dueDate = Optional.ofNullable(b.dueDate);
         this.tags = Collections.unmodifiableList(new ArrayList<>(b.tags));
-        this.comments = Collections.unmodifiableList(new ArrayList<>(b.comments));
+        this.commentCount = b.commentCount;
         this.createdAt = b.createdAt;
         this.updatedAt = b.updatedAt;
     }
@@ -82,8 +82,8 @@ public class Task {
         return tags;
     }
 
-    public List<Comment> getComments() {
-        return comments;
+    public int getCommentCount() {
+        return commentCount;
     }
 
     public Instant getCreatedAt() {
@@ -110,7 +110,7 @@ public class Task {
         private User assignedTo;
         private Instant dueDate;
         private final List<String> tags = new ArrayList<>();
-        private final List<Comment> comments = new ArrayList<>();
+        private int commentCount;
         private Instant createdAt;
         private Instant updatedAt;
 
@@ -167,8 +167,8 @@ public class Task {
             return this;
         }
 
-        public Builder comments(Collection<Comment> comments) {
-            if (comments != null) this.comments.addAll(comments);
+        public Builder commentCount(int commentCount) {
+            this.commentCount = commentCount;
             return this;
         }
 
@@ -0,0 +1,142 @@
+package persistence;
+
+import codec.ModelCodec;
+import enums.Status;
+import models.Task;
+import models.User;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Writes snapshots by folding the write-ahead log into the previous snapshot.
+// Working from the log rather than from the live repositories makes every snapshot
+// exactly "the state as of lsn N", with no need to pause writers. A snapshot holds only
+// live state (latest tasks, users); the TASK, COMMENT and ACTIVITY records of the tail
+// are appended to the HistoryStore as one new segment, so a checkpoint costs what was
+// logged since the previous one. Once both are on disk the log is truncated up to the
+// previous snapshot, so neither the log nor startup grows with everything ever written,
+// and a new snapshot that turns out unreadable can still fall back to the previous one.
+public class Checkpointer implements AutoCloseable {
+
+    private static final int SNAPSHOTS_KEPT = 2;
+
+    private final WriteAheadLog wal;
+    private final Path dir;
+    private ScheduledExecutorService scheduler;
+
+    public Checkpointer(WriteAheadLog wal, Path dir) {
+        this.wal = wal;
+        this.dir = dir;
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create snapshot directory " + dir, e);
+        }
+    }
+
+    // Folds the log tail into a new snapshot, truncates the log up to the previous one and
+    // returns it (or the previous one when nothing was logged since)
+    public synchronized Snapshot checkpoint() {
+        Snapshot previous = Snapshot.loadLatest(dir).orElse(Snapshot.empty());
+
+        Map<UUID, Task> tasks = new LinkedHashMap<>();
+        for (Task t : previous.getTasks()) {
+            tasks.put(t.getId(), t);
+        }
+        Map<UUID, Instant> completedAt = new HashMap<>(previous.getCompletedAt());
+        Map<UUID, User> users = new LinkedHashMap<>();
+        for (User u : previous.getUsers()) {
+            users.put(u.getId(), u);
+        }
+        List<HistoryStore.Record> archived = new ArrayList<>();
+
+        long[] lastLsn = {previous.getLsn()};
+
+        long end = wal.replay(previous.getLogOffset(), previous.getLsn(), (type, lsn, payload) -> {
+            switch (type) {
+                case WriteAheadLog.TASK:
+                    Task task = ModelCodec.decodeTask(payload);
+                    // keeps first-seen (ordinal) order
+                    Task head = tasks.put(task.getId(), task);
+                    if (task.getStatus() == Status.COMPLETED
+                            && (head == null || head.getStatus() != Status.COMPLETED)) {
+                        completedAt.put(task.getId(), task.getUpdatedAt());
+                    }
+                    archived.add(new HistoryStore.Record(type, task.getId(), payload));
+                    break;
+                case WriteAheadLog.USER:
+                    User user = ModelCodec.decodeUser(payload);
+                    users.put(user.getId(), user);
+                    break;
+                case WriteAheadLog.USER_DELETED:
+                    users.remove(ModelCodec.decodeUuid(payload));
+                    break;
+                case WriteAheadLog.COMMENT:
+                    archived.add(new HistoryStore.Record(type, ModelCodec.decodeCommentTaskId(payload), payload));
+                    break;
+                case WriteAheadLog.ACTIVITY:
+                    archived.add(new HistoryStore.Record(type, ModelCodec.decodeActivity(payload).getTaskId(), payload));
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown log record type " + type);
+            }
+            lastLsn[0] = lsn;
+        });
+
+        if (lastLsn[0] == previous.getLsn()) {
+            return previous;
+        }
+
+        // whatever lies past the snapshot we loaded is unreadable or depends on it
+        Snapshot.deleteAfter(dir, previous.getLsn());
+        HistoryStore.deleteFrom(dir, previous.getLsn());
+
+        HistoryStore.writeSegment(dir, previous.getLsn(), lastLsn[0], archived);
+        Snapshot next = new Snapshot(lastLsn[0], end,
+                new ArrayList<>(tasks.values()), completedAt, new ArrayList<>(users.values()), dir);
+        next.writeTo(dir);
+        wal.truncateBefore(previous.getLogOffset(), previous.getLsn());
+        pruneOldSnapshots();
+        return next;
+    }
+
+    // Checkpoints in the background every `interval`
+    public synchronized void scheduleEvery(Duration interval) {
+        if (scheduler != null) {
+            throw new IllegalStateException("Checkpoints are already scheduled");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "checkpointer");
+            t.setDaemon(true);
+            return t;
+        });
+        long millis = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::checkpoint, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    private void pruneOldSnapshots() {
+        List<Path> files = Snapshot.listFiles(dir);
+        for (int i = 0; i < files.size() - SNAPSHOTS_KEPT; i++) {
+            try {
+                Files.deleteIfExists(files.get(i));
+            } catch (IOException e) {
+                // a stale snapshot is harmless; try again next time
+            }
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package persistence;
+
+// When WriteAheadLog.append returns relative to the record reaching disk
+public enum DurabilityMode {
+
+    FSYNC_EACH,   // every append is written and fsynced before returning
+    GROUP_COMMIT, // appends wait for a shared fsync that covers every record queued so far
+    ASYNC         // appends return at once; a background thread fsyncs periodically
+}
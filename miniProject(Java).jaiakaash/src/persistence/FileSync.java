@@ -0,0 +1,29 @@
+package persistence;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Durable file replacement: a rename is only on disk once its directory is fsynced,
+// so anything that relies on the new file (truncating the log behind a snapshot)
+// must wait for that.
+final class FileSync {
+
+    private FileSync() {
+    }
+
+    // Atomically renames temp over target, then fsyncs the directory holding them
+    static void install(Path temp, Path target) throws IOException {
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        directory(target.toAbsolutePath().getParent());
+    }
+
+    static void directory(Path dir) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+}
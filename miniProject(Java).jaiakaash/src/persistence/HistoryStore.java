@@ -0,0 +1,301 @@
+package persistence;
+
+import codec.ModelCodec;
+import models.ActivityEvent;
+import models.Comment;
+import models.Task;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Append-only archive of the history a checkpoint moves out of the write-ahead log:
+// task versions, comments and activity events. Each checkpoint adds one immutable
+// segment holding the TASK / COMMENT / ACTIVITY records of its lsn range, so a
+// checkpoint costs what was logged since the previous one, not the whole history.
+// Reads are lazy: opening lists file names only, and a segment is mapped (and its
+// checksum verified) the first time a query needs it.
+//
+// File layout (history-<fromLsn>-<toLsn>.bin, records with lsn in (fromLsn, toLsn]):
+//   [int magic][int format][long fromLsn][long toLsn][int records]
+//   records x [byte type][int length][payload]          payload as in the log record
+//   records x [long taskMsb][long taskLsb][long offset]  index, in record order
+//   [int crc32 of everything before it]
+//
+// A store only sees the segments up to the snapshot it belongs to; segments past it
+// are left over from a checkpoint whose snapshot was lost, and the log still holds
+// their records. Thread-safe.
+public final class HistoryStore {
+
+    private static final int MAGIC = 0x54484953; // "THIS"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER = 4 + 4 + 8 + 8 + 4;
+    private static final int INDEX_ENTRY = 8 + 8 + 8;
+
+    private static final Pattern NAME = Pattern.compile("history-(\\d{20})-(\\d{20})\\.bin");
+
+    private static final HistoryStore EMPTY = new HistoryStore(List.of());
+
+    // One record of a segment being written
+    static final class Record {
+        final byte type;
+        final UUID taskId;
+        final byte[] payload;
+
+        Record(byte type, UUID taskId, byte[] payload) {
+            this.type = type;
+            this.taskId = taskId;
+            this.payload = payload;
+        }
+    }
+
+    private final List<Segment> segments;
+
+    private HistoryStore(List<Segment> segments) {
+        this.segments = segments;
+    }
+
+    public static HistoryStore empty() {
+        return EMPTY;
+    }
+
+    // The segments in dir holding records up to upToLsn, oldest first
+    static HistoryStore open(Path dir, long upToLsn) {
+        List<Segment> segments = new ArrayList<>();
+        for (Path file : listFiles(dir)) {
+            Matcher m = NAME.matcher(file.getFileName().toString());
+            m.matches();
+            if (Long.parseLong(m.group(2)) <= upToLsn) {
+                segments.add(new Segment(file));
+            }
+        }
+        return segments.isEmpty() ? EMPTY : new HistoryStore(segments);
+    }
+
+    // ---------------- Queries ----------------
+    // Archived versions of a task, oldest first
+    public List<Task> findTaskVersions(UUID taskId) {
+        List<Task> versions = new ArrayList<>();
+        forEach(taskId, WriteAheadLog.TASK, payload -> versions.add(ModelCodec.decodeTask(payload)));
+        return versions;
+    }
+
+    // Archived comments of a task, in the order they were logged
+    public List<Comment> findComments(UUID taskId) {
+        List<Comment> comments = new ArrayList<>();
+        forEach(taskId, WriteAheadLog.COMMENT, payload -> comments.add(ModelCodec.decodeComment(payload)));
+        return comments;
+    }
+
+    // Archived activity of a task, in the order it was logged
+    public List<ActivityEvent> findActivity(UUID taskId) {
+        List<ActivityEvent> events = new ArrayList<>();
+        forEach(taskId, WriteAheadLog.ACTIVITY, payload -> events.add(ModelCodec.decodeActivity(payload)));
+        return events;
+    }
+
+    // All archived activity, in the order it was logged
+    public List<ActivityEvent> findAllActivity() {
+        List<ActivityEvent> events = new ArrayList<>();
+        for (Segment segment : segments) {
+            segment.forEach(WriteAheadLog.ACTIVITY, payload -> events.add(ModelCodec.decodeActivity(payload)));
+        }
+        return events;
+    }
+
+    public boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    private void forEach(UUID taskId, byte type, Consumer<byte[]> visitor) {
+        for (Segment segment : segments) {
+            segment.forEach(taskId, type, visitor);
+        }
+    }
+
+    // ---------------- Write ----------------
+    // Writes the records of lsns (fromLsn, toLsn] as a new segment: temp file, fsync,
+    // rename, directory fsync. Once this returns the log may drop them.
+    static void writeSegment(Path dir, long fromLsn, long toLsn, List<Record> records) {
+        long size = HEADER + (long) records.size() * INDEX_ENTRY + 4;
+        for (Record r : records) {
+            size += 1 + 4 + r.payload.length;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("History segment too large: " + size + " bytes");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(fromLsn).putLong(toLsn).putInt(records.size());
+        long[] offsets = new long[records.size()];
+        for (int i = 0; i < records.size(); i++) {
+            Record r = records.get(i);
+            offsets[i] = buffer.position();
+            buffer.put(r.type).putInt(r.payload.length).put(r.payload);
+        }
+        for (int i = 0; i < records.size(); i++) {
+            UUID taskId = records.get(i).taskId;
+            buffer.putLong(taskId.getMostSignificantBits()).putLong(taskId.getLeastSignificantBits()).putLong(offsets[i]);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+
+        Path target = dir.resolve(String.format("history-%020d-%020d.bin", fromLsn, toLsn));
+        Path temp = dir.resolve(target.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            FileSync.install(temp, target);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write history segment " + target, e);
+        }
+    }
+
+    // Deletes segments starting at or after lsn: left over from checkpoints whose
+    // snapshot did not survive, and about to be covered again
+    static void deleteFrom(Path dir, long lsn) {
+        for (Path file : listFiles(dir)) {
+            Matcher m = NAME.matcher(file.getFileName().toString());
+            m.matches();
+            if (Long.parseLong(m.group(1)) >= lsn) {
+                try {
+                    Files.delete(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot delete stale history segment " + file, e);
+                }
+            }
+        }
+    }
+
+    // Segment files in dir, oldest first
+    private static List<Path> listFiles(Path dir) {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files
+                    .filter(p -> NAME.matcher(p.getFileName().toString()).matches())
+                    .sorted(Comparator.comparing(p -> p.getFileName().toString()))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list history segments in " + dir, e);
+        }
+    }
+
+    // ---------------- Segments ----------------
+    // A segment file, mapped and indexed on first use
+    private static final class Segment {
+
+        private final Path file;
+        private MappedByteBuffer buffer;            // guarded by this
+        private long[] offsets;                     // guarded by this: record offsets, in record order
+        private Map<UUID, int[]> recordsByTaskId;   // guarded by this: record numbers, ascending
+
+        Segment(Path file) {
+            this.file = file;
+        }
+
+        void forEach(UUID taskId, byte type, Consumer<byte[]> visitor) {
+            ByteBuffer view;
+            int[] records;
+            long[] at;
+            synchronized (this) {
+                load();
+                records = recordsByTaskId.get(taskId);
+                view = buffer.duplicate();
+                at = offsets;
+            }
+            if (records != null) {
+                for (int record : records) {
+                    visit(view, (int) at[record], type, visitor);
+                }
+            }
+        }
+
+        void forEach(byte type, Consumer<byte[]> visitor) {
+            ByteBuffer view;
+            long[] at;
+            synchronized (this) {
+                load();
+                view = buffer.duplicate();
+                at = offsets;
+            }
+            for (long offset : at) {
+                visit(view, (int) offset, type, visitor);
+            }
+        }
+
+        private static void visit(ByteBuffer view, int offset, byte type, Consumer<byte[]> visitor) {
+            if (view.get(offset) != type) {
+                return;
+            }
+            byte[] payload = new byte[view.getInt(offset + 1)];
+            view.get(offset + 5, payload);
+            visitor.accept(payload);
+        }
+
+        // Caller holds this
+        private void load() {
+            if (buffer != null) {
+                return;
+            }
+            MappedByteBuffer mapped;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read history segment " + file, e);
+            }
+
+            int size = mapped.capacity();
+            if (size < HEADER + 4 || mapped.getInt(0) != MAGIC || mapped.getInt(4) != FORMAT_VERSION) {
+                throw new IllegalStateException("Not a history segment (or an unsupported format): " + file);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(mapped.slice(0, size - 4));
+            if ((int) crc.getValue() != mapped.getInt(size - 4)) {
+                throw new IllegalStateException("History segment fails its checksum: " + file);
+            }
+
+            int count = mapped.getInt(24);
+            int index = size - 4 - count * INDEX_ENTRY;
+            long[] recordOffsets = new long[count];
+            Map<UUID, int[]> byTaskId = new HashMap<>();
+            Map<UUID, Integer> filled = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                UUID taskId = new UUID(mapped.getLong(index + i * INDEX_ENTRY), mapped.getLong(index + i * INDEX_ENTRY + 8));
+                recordOffsets[i] = mapped.getLong(index + i * INDEX_ENTRY + 16);
+                filled.merge(taskId, 1, Integer::sum);
+            }
+            filled.forEach((taskId, n) -> byTaskId.put(taskId, new int[n]));
+            filled.clear();
+            for (int i = 0; i < count; i++) {
+                UUID taskId = new UUID(mapped.getLong(index + i * INDEX_ENTRY), mapped.getLong(index + i * INDEX_ENTRY + 8));
+                int n = filled.merge(taskId, 1, Integer::sum);
+                byTaskId.get(taskId)[n - 1] = i;
+            }
+
+            this.offsets = recordOffsets;
+            this.recordsByTaskId = byTaskId;
+            this.buffer = mapped;
+        }
+    }
+}
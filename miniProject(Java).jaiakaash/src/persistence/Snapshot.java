@@ -0,0 +1,346 @@
+package persistence;
+
+import codec.ModelReader;
+import codec.ModelWriter;
+import models.Task;
+import models.User;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Point-in-time image of the live data as of log sequence number `lsn`: the latest
+// version of every task (in ordinal order) with the time it reached COMPLETED, and
+// the users. Older task versions, comments and activity are not live data: checkpoints
+// move them into the HistoryStore, which getHistory() opens. `logOffset` is where the
+// write-ahead log has to be replayed from to catch up.
+//
+// File layout (snapshot-<lsn>.bin):
+//   [int magic][int format][long lsn][long logOffset][int segmentCount]
+//   segmentCount x [byte kind][int records][long bytes]
+//   segment bodies, each one ModelWriter stream of its records
+//   (a task record is the task followed by its completion instant, or null)
+//   [int crc32 of everything before it]
+// Segments hold at most SEGMENT_RECORDS records and are decoded in parallel on load.
+// A file that fails its checksum is skipped in favour of the previous snapshot.
+public final class Snapshot {
+
+    private static final int MAGIC = 0x54534E50; // "TSNP"
+    private static final int FORMAT_VERSION = 6;
+    private static final int SEGMENT_RECORDS = 4096;
+    private static final long CHECKSUM_CHUNK = 64L << 20;
+
+    private static final byte TASKS = 1;
+    private static final byte USERS = 2;
+
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+
+    private final long lsn;
+    private final long logOffset;
+    private final List<Task> tasks;
+    private final Map<UUID, Instant> completedAt;
+    private final List<User> users;
+    private final Path dir; // null: no history
+
+    private HistoryStore history; // guarded by this, opened on first use
+
+    // dir is where the snapshot's history segments live (null when it has none)
+    public Snapshot(long lsn,
+                    long logOffset,
+                    List<Task> tasks,
+                    Map<UUID, Instant> completedAt,
+                    List<User> users,
+                    Path dir) {
+        this.lsn = lsn;
+        this.logOffset = logOffset;
+        this.tasks = List.copyOf(tasks);
+        this.completedAt = Collections.unmodifiableMap(new HashMap<>(completedAt));
+        this.users = List.copyOf(users);
+        this.dir = dir;
+    }
+
+    public static Snapshot empty() {
+        return new Snapshot(0, 0, List.of(), Map.of(), List.of(), null);
+    }
+
+    // ---------- Getters ----------
+    public long getLsn() {
+        return lsn;
+    }
+
+    public long getLogOffset() {
+        return logOffset;
+    }
+
+    // Latest version of every task, in ordinal order
+    public List<Task> getTasks() {
+        return tasks;
+    }
+
+    // Task id -> when the task moved to COMPLETED (tasks that did)
+    public Map<UUID, Instant> getCompletedAt() {
+        return completedAt;
+    }
+
+    public List<User> getUsers() {
+        return users;
+    }
+
+    // Task versions, comments and activity logged up to lsn and archived by checkpoints
+    public synchronized HistoryStore getHistory() {
+        if (history == null) {
+            history = dir == null ? HistoryStore.empty() : HistoryStore.open(dir, lsn);
+        }
+        return history;
+    }
+
+    // ---------------- Write ----------------
+    // Writes to a temp file, fsyncs, then renames into place (and fsyncs the directory)
+    // so a crash never leaves a half-written snapshot under the final name
+    public Path writeTo(Path dir) {
+        List<Byte> kinds = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        List<ByteBuffer> bodies = new ArrayList<>();
+
+        encodeSegments(TASKS, tasks,
+                (writer, task) -> writer.writeTask(task).writeInstant(completedAt.get(task.getId())),
+                kinds, counts, bodies);
+        encodeSegments(USERS, users, ModelWriter::writeUser, kinds, counts, bodies);
+
+        Path target = fileFor(dir, lsn);
+        Path temp = dir.resolve(target.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            ByteBuffer header = ByteBuffer.allocate(4 + 4 + 8 + 8 + 4 + bodies.size() * (1 + 4 + 8));
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(lsn).putLong(logOffset).putInt(bodies.size());
+            for (int i = 0; i < bodies.size(); i++) {
+                header.put(kinds.get(i)).putInt(counts.get(i)).putLong(bodies.get(i).remaining());
+            }
+            header.flip();
+
+            CRC32 crc = new CRC32();
+            crc.update(header.duplicate());
+            writeFully(channel, header);
+            for (ByteBuffer body : bodies) {
+                crc.update(body.duplicate());
+                writeFully(channel, body);
+            }
+            writeFully(channel, ByteBuffer.allocate(4).putInt(0, (int) crc.getValue()));
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write snapshot " + target, e);
+        }
+
+        try {
+            FileSync.install(temp, target);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot install snapshot " + target, e);
+        }
+        return target;
+    }
+
+    private static Path fileFor(Path dir, long lsn) {
+        return dir.resolve(String.format("%s%020d%s", PREFIX, lsn, SUFFIX));
+    }
+
+    // One ModelWriter stream per segment, so repeated names, emails and tags are
+    // stored once per segment
+    private static <T> void encodeSegments(byte kind,
+                                           List<T> records,
+                                           BiConsumer<ModelWriter, T> encoder,
+                                           List<Byte> kinds,
+                                           List<Integer> counts,
+                                           List<ByteBuffer> bodies) {
+        for (int from = 0; from < records.size(); from += SEGMENT_RECORDS) {
+            int to = Math.min(records.size(), from + SEGMENT_RECORDS);
+            ModelWriter writer = new ModelWriter();
+            for (T record : records.subList(from, to)) {
+                encoder.accept(writer, record);
+            }
+            kinds.add(kind);
+            counts.add(to - from);
+            bodies.add(writer.toByteBuffer());
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // ---------------- Read ----------------
+    // Loads the snapshot with the highest lsn in dir that passes its checksum, if any.
+    // The log is only truncated up to the snapshot before the latest, so falling back
+    // one snapshot still finds the records written after it.
+    public static Optional<Snapshot> loadLatest(Path dir) {
+        List<Path> files = listFiles(dir);
+        for (int i = files.size() - 1; i >= 0; i--) {
+            try {
+                return Optional.of(read(files.get(i)));
+            } catch (IllegalStateException e) {
+                // torn or corrupt: try the previous one
+            }
+        }
+        return Optional.empty();
+    }
+
+    // Deletes the snapshots after lsn: unreadable ones a checkpoint fell back past
+    static void deleteAfter(Path dir, long lsn) {
+        String last = fileFor(dir, lsn).getFileName().toString();
+        for (Path file : listFiles(dir)) {
+            if (file.getFileName().toString().compareTo(last) > 0) {
+                try {
+                    Files.delete(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot delete unreadable snapshot " + file, e);
+                }
+            }
+        }
+    }
+
+    // Snapshot files in dir, oldest first
+    static List<Path> listFiles(Path dir) {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files
+                    .filter(p -> {
+                        String name = p.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted(Comparator.comparing(p -> p.getFileName().toString()))
+                    .collect(java.util.stream.Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list snapshots in " + dir, e);
+        }
+    }
+
+    // Throws IllegalStateException if the file is not a complete, intact snapshot
+    public static Snapshot read(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+            verifyChecksum(channel, file);
+
+            ByteBuffer fixed = ByteBuffer.allocate(4 + 4 + 8 + 8 + 4);
+            readFully(channel, fixed, 0);
+            fixed.flip();
+            if (fixed.getInt() != MAGIC || fixed.getInt() != FORMAT_VERSION) {
+                throw new IllegalStateException("Not a snapshot file: " + file);
+            }
+            long lsn = fixed.getLong();
+            long logOffset = fixed.getLong();
+            int segmentCount = fixed.getInt();
+
+            ByteBuffer table = ByteBuffer.allocate(segmentCount * (1 + 4 + 8));
+            readFully(channel, table, fixed.capacity());
+            table.flip();
+
+            byte[] kinds = new byte[segmentCount];
+            int[] counts = new int[segmentCount];
+            long[] offsets = new long[segmentCount];
+            long[] lengths = new long[segmentCount];
+            long position = fixed.capacity() + table.capacity();
+            for (int i = 0; i < segmentCount; i++) {
+                kinds[i] = table.get();
+                counts[i] = table.getInt();
+                lengths[i] = table.getLong();
+                offsets[i] = position;
+                position += lengths[i];
+            }
+
+            // Decode segments in parallel; each result keeps its segment's record order
+            List<?>[] decoded = new List<?>[segmentCount];
+            IntStream.range(0, segmentCount).parallel().forEach(i -> {
+                try {
+                    MappedByteBuffer body = channel.map(FileChannel.MapMode.READ_ONLY, offsets[i], lengths[i]);
+                    decoded[i] = decodeSegment(kinds[i], counts[i], body);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot read snapshot segment " + i, e);
+                }
+            });
+
+            List<Task> tasks = new ArrayList<>();
+            Map<UUID, Instant> completedAt = new HashMap<>();
+            List<User> users = new ArrayList<>();
+            for (int i = 0; i < segmentCount; i++) {
+                if (kinds[i] == TASKS) {
+                    for (Object o : decoded[i]) {
+                        Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+                        Task task = (Task) entry.getKey();
+                        tasks.add(task);
+                        if (entry.getValue() != null) {
+                            completedAt.put(task.getId(), (Instant) entry.getValue());
+                        }
+                    }
+                } else {
+                    for (Object o : decoded[i]) {
+                        users.add((User) o);
+                    }
+                }
+            }
+
+            return new Snapshot(lsn, logOffset, tasks, completedAt, users, file.getParent());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read snapshot " + file, e);
+        }
+    }
+
+    private static void verifyChecksum(FileChannel channel, Path file) throws IOException {
+        long size = channel.size();
+        if (size < 4 + 4 + 8 + 8 + 4 + 4) {
+            throw new IllegalStateException("Truncated snapshot: " + file);
+        }
+        long end = size - 4;
+        CRC32 crc = new CRC32();
+        for (long position = 0; position < end; position += CHECKSUM_CHUNK) {
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(CHECKSUM_CHUNK, end - position)));
+        }
+        ByteBuffer stored = ByteBuffer.allocate(4);
+        readFully(channel, stored, end);
+        if ((int) crc.getValue() != stored.getInt(0)) {
+            throw new IllegalStateException("Snapshot fails its checksum: " + file);
+        }
+    }
+
+    // Decodes straight from the mapped segment
+    private static List<Object> decodeSegment(byte kind, int count, ByteBuffer body) {
+        ModelReader reader = new ModelReader(body);
+        List<Object> records = new ArrayList<>(count);
+        for (int n = 0; n < count; n++) {
+            switch (kind) {
+                case TASKS:
+                    Task task = reader.readTask();
+                    records.add(new AbstractMap.SimpleImmutableEntry<>(task, reader.readInstant()));
+                    break;
+                case USERS:
+                    records.add(reader.readUser());
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown snapshot segment kind " + kind);
+            }
+        }
+        return records;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Truncated snapshot");
+            }
+        }
+    }
+}
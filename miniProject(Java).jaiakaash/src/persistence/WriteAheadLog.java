@@ -0,0 +1,453 @@
+package persistence;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+// Append-only binary log shared by the repositories.
+//
+// File:  [int magic][int format][long baseOffset][long baseLsn] then frames
+// Frame: [int payloadLength][byte type][long lsn][payload][int crc32(type, lsn, payload)]
+//
+// Every record gets a log sequence number (lsn), strictly increasing from 1. On open,
+// the log is scanned and a torn or corrupt tail (a crash mid-write) is truncated.
+//
+// Only the flusher thread writes to the shared channel, in every mode: an interrupt
+// during FileChannel I/O closes the channel, and callers' threads may be interrupted.
+// Replay and truncateBefore read through channels of their own for the same reason.
+//
+// Offsets handed out by replay() are logical: they keep growing across truncateBefore(),
+// which drops the records a snapshot covers. baseOffset / baseLsn record what was
+// dropped. A non-empty file without the header is rejected.
+public class WriteAheadLog implements AutoCloseable {
+
+    // ---- Record types ----
+    public static final byte TASK = 1;
+    public static final byte USER = 2;
+    public static final byte USER_DELETED = 3;
+    public static final byte ACTIVITY = 4;
+    public static final byte COMMENT = 5;
+
+    private static final int MAGIC = 0x5457414C; // "TWAL"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER = 4 + 4 + 8 + 8;
+    private static final int FRAME_OVERHEAD = 4 + 1 + 8 + 4;
+    private static final long ASYNC_FLUSH_INTERVAL_MILLIS = 10;
+
+    // Called for each intact record during replay
+    public interface RecordVisitor {
+        void visit(byte type, long lsn, byte[] payload);
+    }
+
+    private final Path path;
+    private final DurabilityMode mode;
+
+    // The write side is held while truncateBefore() swaps the file; the read side by
+    // the flusher's writes and by replay scans. Taken before `lock`, never inside it.
+    private final ReadWriteLock channelLock = new ReentrantReadWriteLock();
+    private FileChannel channel;          // guarded by channelLock (and lock for appends)
+    private long baseOffset;              // guarded by channelLock: logical offset of the first frame
+    private long baseLsn;                 // guarded by channelLock: last lsn dropped by truncation
+
+    private final Object lock = new Object();
+    private long lastLsn;                 // guarded by lock: last lsn handed out
+    private long durableLsn;              // guarded by lock: last lsn known to be fsynced
+    private long durableEnd;              // guarded by lock: physical end of the fsynced frames
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream(); // guarded by lock
+    private IOException failure;          // guarded by lock: sticky flusher failure
+    private boolean closed;               // guarded by lock
+
+    private final Thread flusher;
+
+    public WriteAheadLog(Path path, DurabilityMode mode) {
+        this.path = path;
+        this.mode = mode;
+        try {
+            this.channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() == 0) {
+                writeFully(channel, header(0, 0), 0);
+            } else if (!readHeader()) {
+                channel.close();
+                throw new IllegalStateException("Not a write-ahead log: " + path);
+            }
+            lastLsn = baseLsn;
+            durableEnd = scan(channel, HEADER, channel.size(), (type, lsn, payload) -> lastLsn = lsn);
+            channel.truncate(durableEnd);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open write-ahead log " + path, e);
+        }
+        this.durableLsn = lastLsn;
+
+        this.flusher = new Thread(this::flushLoop, "wal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public DurabilityMode getMode() {
+        return mode;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    // Appends a record and returns its lsn once it is as durable as the mode promises
+    public long append(byte type, byte[] payload) {
+        byte[] frame = frame(type, payload);
+
+        synchronized (lock) {
+            checkOpen();
+            long lsn = ++lastLsn;
+            ByteBuffer.wrap(frame).putLong(5, lsn);
+            stampCrc(frame);
+
+            pending.write(frame, 0, frame.length);
+            lock.notifyAll();
+
+            if (mode != DurabilityMode.ASYNC) {
+                awaitDurable(lsn);
+            }
+            return lsn;
+        }
+    }
+
+    // Blocks until every record appended before this call is fsynced
+    public void sync() {
+        synchronized (lock) {
+            lock.notifyAll();
+            awaitDurable(lastLsn);
+        }
+    }
+
+    public long getLastLsn() {
+        synchronized (lock) {
+            return lastLsn;
+        }
+    }
+
+    // Visits every record currently in the log, in lsn order
+    public void replay(RecordVisitor visitor) {
+        replay(0, 0, visitor);
+    }
+
+    // Visits records with lsn > afterLsn, scanning from offset fromOffset (0 or an
+    // offset previously returned by this method). Returns the offset where the scan ended.
+    // Throws if records the caller needs were dropped by truncateBefore().
+    public long replay(long fromOffset, long afterLsn, RecordVisitor visitor) {
+        sync();
+        channelLock.readLock().lock();
+        try (FileChannel reader = FileChannel.open(path, StandardOpenOption.READ)) {
+            long end;
+            synchronized (lock) {
+                end = durableEnd;
+            }
+            if (fromOffset < baseOffset) {
+                if (afterLsn < baseLsn) {
+                    throw new IllegalStateException("Records up to lsn " + baseLsn + " of " + path
+                            + " were truncated after a checkpoint; restore from the snapshot first");
+                }
+                fromOffset = baseOffset; // everything dropped is at or before afterLsn
+            }
+            long physicalEnd = scan(reader, fromOffset - baseOffset + HEADER, end, (type, lsn, payload) -> {
+                if (lsn > afterLsn) {
+                    visitor.visit(type, lsn, payload);
+                }
+            });
+            return physicalEnd - HEADER + baseOffset;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Write-ahead log replay failed", e);
+        } finally {
+            channelLock.readLock().unlock();
+        }
+    }
+
+    // Drops the records before `offset` (an offset returned by replay, all of whose
+    // earlier records have lsn <= `lsn`) once a snapshot covers them. The remaining
+    // records are copied to a new file that atomically replaces this one. The flusher
+    // waits for the copy; records queued meanwhile go to the new file.
+    public void truncateBefore(long offset, long lsn) {
+        channelLock.writeLock().lock();
+        try {
+            synchronized (lock) {
+                checkOpen();
+                if (offset <= baseOffset) {
+                    return;
+                }
+                long from = offset - baseOffset + HEADER;
+                long end = durableEnd;
+                if (from > end) {
+                    throw new IllegalArgumentException("Offset " + offset + " is past the end of " + path);
+                }
+                Path temp = path.resolveSibling(path.getFileName() + ".truncate");
+                try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ);
+                     FileChannel out = FileChannel.open(temp,
+                             StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    writeFully(out, header(offset, lsn), 0);
+                    out.position(HEADER);
+                    for (long copied = 0; copied < end - from; ) {
+                        copied += in.transferTo(from + copied, end - from - copied, out);
+                    }
+                    out.force(true);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot truncate write-ahead log " + path, e);
+                }
+
+                try {
+                    // the rename must be durable before the caller relies on the truncation
+                    FileSync.install(temp, path);
+                    channel.close();
+                    channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                } catch (IOException e) {
+                    failure = e; // the old channel may be gone: refuse further appends
+                    throw new UncheckedIOException("Cannot reopen truncated write-ahead log " + path, e);
+                }
+                baseOffset = offset;
+                baseLsn = lsn;
+                durableEnd = HEADER + end - from;
+            }
+        } finally {
+            channelLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            if (failure == null) {
+                lock.notifyAll();
+                awaitDurable(lastLsn);
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        boolean interrupted = false;
+        while (flusher.isAlive()) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        channelLock.writeLock().lock();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            channelLock.writeLock().unlock();
+        }
+    }
+
+    // ---------------- Flushing ----------------
+    // The single writer. Takes everything queued so far, writes it and fsyncs once, then
+    // releases every appender waiting on those lsns. FSYNC_EACH fsyncs frame by frame.
+    private void flushLoop() {
+        while (true) {
+            byte[] batch;
+            long batchLsn;
+            synchronized (lock) {
+                while (pending.size() == 0 && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        // keep draining until closed
+                    }
+                }
+                if (pending.size() == 0) {
+                    return;
+                }
+                batch = pending.toByteArray();
+                pending = new ByteArrayOutputStream(batch.length);
+                batchLsn = lastLsn;
+            }
+
+            // durableEnd moves before the read lock is released, so truncateBefore()
+            // always copies up to the last frame written
+            channelLock.readLock().lock();
+            try {
+                if (mode == DurabilityMode.FSYNC_EACH) {
+                    ByteBuffer frames = ByteBuffer.wrap(batch);
+                    while (frames.hasRemaining()) {
+                        int length = FRAME_OVERHEAD + frames.getInt(frames.position());
+                        long lsn = frames.getLong(frames.position() + 5);
+                        written(frames.slice(frames.position(), length), lsn);
+                        frames.position(frames.position() + length);
+                    }
+                } else {
+                    written(ByteBuffer.wrap(batch), batchLsn);
+                }
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            } finally {
+                channelLock.readLock().unlock();
+            }
+
+            if (mode == DurabilityMode.ASYNC) {
+                try {
+                    Thread.sleep(ASYNC_FLUSH_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    // flush again straight away
+                }
+            }
+        }
+    }
+
+    // Flusher thread, holding channelLock's read side: writes frames ending with lsn
+    // at the end of the log and fsyncs them
+    private void written(ByteBuffer frames, long lsn) throws IOException {
+        long position;
+        synchronized (lock) {
+            position = durableEnd;
+        }
+        int length = frames.remaining();
+        writeFully(channel, frames, position);
+        channel.force(false);
+        synchronized (lock) {
+            durableEnd = position + length;
+            durableLsn = lsn;
+            lock.notifyAll();
+        }
+    }
+
+    // Caller holds lock. Not interruptible: the record is queued and will be written
+    // either way, so an interrupt is only passed on once it is durable.
+    private void awaitDurable(long lsn) {
+        boolean interrupted = false;
+        try {
+            while (durableLsn < lsn) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Write-ahead log flush failed", failure);
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Caller holds lock
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log is closed");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Write-ahead log failed earlier", failure);
+        }
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer buffer, long position) throws IOException {
+        long at = position;
+        while (buffer.hasRemaining()) {
+            at += target.write(buffer, at);
+        }
+    }
+
+    // ---------------- Header ----------------
+    private static ByteBuffer header(long baseOffset, long baseLsn) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(baseOffset).putLong(baseLsn);
+        return header.flip();
+    }
+
+    // Sets baseOffset / baseLsn from the file's header; false if it has no current-format header
+    private boolean readHeader() throws IOException {
+        if (channel.size() < HEADER) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        readFully(channel, header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+            return false;
+        }
+        baseOffset = header.getLong();
+        baseLsn = header.getLong();
+        return true;
+    }
+
+    // ---------------- Framing ----------------
+    private static byte[] frame(byte type, byte[] payload) {
+        byte[] frame = new byte[FRAME_OVERHEAD + payload.length];
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        buffer.putInt(payload.length);
+        buffer.put(type);
+        buffer.putLong(0); // lsn, stamped under the lock
+        buffer.put(payload);
+        return frame;
+    }
+
+    private static void stampCrc(byte[] frame) {
+        CRC32 crc = new CRC32();
+        crc.update(frame, 4, frame.length - 8);
+        ByteBuffer.wrap(frame).putInt(frame.length - 4, (int) crc.getValue());
+    }
+
+    // Reads frames of source in [from, to); returns the end offset of the last intact frame
+    private static long scan(FileChannel source, long from, long to, RecordVisitor visitor) throws IOException {
+        long position = from;
+        ByteBuffer header = ByteBuffer.allocate(4 + 1 + 8);
+
+        while (position + FRAME_OVERHEAD <= to) {
+            header.clear();
+            readFully(source, header, position);
+            header.flip();
+            int length = header.getInt();
+            byte type = header.get();
+            long lsn = header.getLong();
+
+            if (length < 0 || position + FRAME_OVERHEAD + length > to) {
+                break; // torn tail
+            }
+
+            ByteBuffer body = ByteBuffer.allocate(length + 4);
+            readFully(source, body, position + header.capacity());
+            body.flip();
+            byte[] payload = new byte[length];
+            body.get(payload);
+            int storedCrc = body.getInt();
+
+            CRC32 crc = new CRC32();
+            crc.update(type);
+            crc.update(ByteBuffer.allocate(8).putLong(0, lsn).array());
+            crc.update(payload);
+            if ((int) crc.getValue() != storedCrc) {
+                break; // corrupt tail
+            }
+
+            visitor.visit(type, lsn, payload);
+            position += FRAME_OVERHEAD + length;
+        }
+        return position;
+    }
+
+    private static void readFully(FileChannel source, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = source.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+}
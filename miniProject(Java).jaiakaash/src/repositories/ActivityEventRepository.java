@@ -1,27 +1,165 @@
 package repositories;
 
+import codec.ModelCodec;
 import models.ActivityEvent;
+import persistence.HistoryStore;
+import persistence.Snapshot;
+import persistence.WriteAheadLog;
 
+import java.time.Instant;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
-public class ActivityEventRepository {
+// Thread-safe: appends to different tasks only contend on their own log's monitor
+public class ActivityEventRepository implements ActivityStore {
 
-    private final List<ActivityEvent> events = new ArrayList<>();
+    // Events since the snapshot; the ones before it are in its history store
+    private final Queue<ActivityEvent> events = new ConcurrentLinkedQueue<>();
 
+    // Per-task logs kept in timestamp order (ties in arrival order). Concurrent writers
+    // stamp events before saving them, so a late arrival is inserted in place.
+    // Each log is guarded by its own monitor, and loaded from history on first use.
+    private final Map<UUID, List<ActivityEvent>> eventsByTaskId = new ConcurrentHashMap<>();
+    private final HistoryStore history;
+
+    // Optional durability: events are logged before they become visible
+    private final WriteAheadLog wal;
+
+    public ActivityEventRepository() {
+        this(null);
+    }
+
+    // Rebuilds the repository from the log's ACTIVITY records, then logs every new event
+    public ActivityEventRepository(WriteAheadLog wal) {
+        this(wal, null);
+    }
+
+    // Replays only the log records written after the snapshot; the events it covers
+    // stay in its history store until they are queried
+    public ActivityEventRepository(WriteAheadLog wal, Snapshot snapshot) {
+        this.wal = wal;
+        this.history = snapshot == null ? HistoryStore.empty() : snapshot.getHistory();
+        if (wal != null) {
+            long fromOffset = snapshot == null ? 0 : snapshot.getLogOffset();
+            long afterLsn = snapshot == null ? 0 : snapshot.getLsn();
+            wal.replay(fromOffset, afterLsn, (type, lsn, payload) -> {
+                if (type == WriteAheadLog.ACTIVITY) {
+                    append(ModelCodec.decodeActivity(payload));
+                }
+            });
+        }
+    }
+
+    @Override
     public ActivityEvent save(ActivityEvent event) {
-        events.add(event);
+        if (wal != null) {
+            wal.append(WriteAheadLog.ACTIVITY, ModelCodec.encodeActivity(event));
+        }
+        append(event);
         return event;
     }
 
+    private void append(ActivityEvent event) {
+        List<ActivityEvent> log = eventsByTaskId.computeIfAbsent(event.getTaskId(), this::archived);
+        synchronized (log) {
+            insert(log, event);
+        }
+        events.add(event);
+    }
+
+    // The task's archived events, in timestamp order
+    private List<ActivityEvent> archived(UUID taskId) {
+        List<ActivityEvent> log = new ArrayList<>();
+        for (ActivityEvent event : history.findActivity(taskId)) {
+            insert(log, event);
+        }
+        return log;
+    }
+
+    // The task's log, or null if it has no events
+    private List<ActivityEvent> logOf(UUID taskId) {
+        return eventsByTaskId.computeIfAbsent(taskId, id -> {
+            List<ActivityEvent> log = archived(id);
+            return log.isEmpty() ? null : log;
+        });
+    }
+
+    private static void insert(List<ActivityEvent> log, ActivityEvent event) {
+        log.add(insertionPoint(log, event.getTimestamp()), event);
+    }
+
+    // Index after the last event with timestamp <= t; caller holds the log's monitor
+    private static int insertionPoint(List<ActivityEvent> log, Instant t) {
+        int lo = 0;
+        int hi = log.size();
+        if (hi == 0 || !log.get(hi - 1).getTimestamp().isAfter(t)) {
+            return hi; // the common case: newest so far
+        }
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (log.get(mid).getTimestamp().isAfter(t)) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+    // All events of a task, oldest first
+    @Override
     public List<ActivityEvent> findByTaskId(UUID taskId) {
-        return events.stream()
-                .filter(e -> e.getTaskId().equals(taskId))
-                .sorted(Comparator.comparing(ActivityEvent::getTimestamp))
-                .collect(Collectors.toList());
+        List<ActivityEvent> log = logOf(taskId);
+        if (log == null) {
+            return new ArrayList<>();
+        }
+        synchronized (log) {
+            return new ArrayList<>(log);
+        }
+    }
+
+    // The last n events of a task, oldest first
+    @Override
+    public List<ActivityEvent> findLastByTaskId(UUID taskId, int n) {
+        List<ActivityEvent> log = logOf(taskId);
+        if (log == null || n <= 0) {
+            return new ArrayList<>();
+        }
+        synchronized (log) {
+            return new ArrayList<>(log.subList(Math.max(0, log.size() - n), log.size()));
+        }
+    }
+
+    // Events of a task with timestamp >= since, oldest first
+    @Override
+    public List<ActivityEvent> findByTaskIdSince(UUID taskId, Instant since) {
+        List<ActivityEvent> log = logOf(taskId);
+        if (log == null) {
+            return new ArrayList<>();
+        }
+
+        synchronized (log) {
+            // first index whose timestamp is not before `since`
+            int lo = 0;
+            int hi = log.size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (log.get(mid).getTimestamp().isBefore(since)) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return new ArrayList<>(log.subList(lo, log.size()));
+        }
     }
 
+    // Archived events first, then the ones since the snapshot, each in arrival order
+    @Override
     public List<ActivityEvent> findAll() {
-        return new ArrayList<>(events);
+        List<ActivityEvent> all = history.findAllActivity();
+        all.addAll(events);
+        return all;
     }
 }
@@ -0,0 +1,34 @@
+package repositories;
+
+import models.ActivityEvent;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+// Activity log storage. ActivityEventRepository keeps the events on the heap (optionally
+// backed by the write-ahead log); MappedActivityEventRepository keeps them off-heap in
+// its own segment files. Implementations are thread-safe and return per-task events in
+// timestamp order.
+public interface ActivityStore {
+
+    ActivityEvent save(ActivityEvent event);
+
+    default void saveAll(Collection<ActivityEvent> batch) {
+        for (ActivityEvent event : batch) {
+            save(event);
+        }
+    }
+
+    // All events of a task, oldest first
+    List<ActivityEvent> findByTaskId(UUID taskId);
+
+    // The last n events of a task, oldest first
+    List<ActivityEvent> findLastByTaskId(UUID taskId, int n);
+
+    // Events of a task with timestamp >= since, oldest first
+    List<ActivityEvent> findByTaskIdSince(UUID taskId, Instant since);
+
+    List<ActivityEvent> findAll();
+}
@@ -0,0 +1,111 @@
+package repositories;
+
+import codec.ModelCodec;
+import models.Comment;
+import persistence.HistoryStore;
+import persistence.Snapshot;
+import persistence.WriteAheadLog;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Per-task append-only comment logs. Position p is the p-th comment (0-based) of a task;
+// a task version with commentCount n sees positions 0..n-1. TaskService appends under
+// the task's stripe lock, once the version that counts the comment is logged and before
+// it is visible, to keep that true.
+// Thread-safe: each log is guarded by its own monitor.
+public class CommentRepository {
+
+    // Logs are loaded from the snapshot's history the first time a task is touched
+    private final Map<UUID, List<Comment>> commentsByTaskId = new ConcurrentHashMap<>();
+    private final HistoryStore history;
+
+    // Optional durability: comments are logged before they become visible
+    private final WriteAheadLog wal;
+
+    public CommentRepository() {
+        this(null, null);
+    }
+
+    // Rebuilds the repository from the log's COMMENT records, then logs every new comment
+    public CommentRepository(WriteAheadLog wal) {
+        this(wal, null);
+    }
+
+    // Replays only the log records written after the snapshot; the comments it covers
+    // stay in its history store until a task's log is first used
+    public CommentRepository(WriteAheadLog wal, Snapshot snapshot) {
+        this.wal = wal;
+        this.history = snapshot == null ? HistoryStore.empty() : snapshot.getHistory();
+        if (wal != null) {
+            long fromOffset = snapshot == null ? 0 : snapshot.getLogOffset();
+            long afterLsn = snapshot == null ? 0 : snapshot.getLsn();
+            wal.replay(fromOffset, afterLsn, (type, lsn, payload) -> {
+                if (type == WriteAheadLog.COMMENT) {
+                    append(ModelCodec.decodeCommentTaskId(payload), ModelCodec.decodeComment(payload));
+                }
+            });
+        }
+    }
+
+    // Appends and returns the comment's position in the task's log
+    public int save(UUID taskId, Comment comment) {
+        if (wal != null) {
+            wal.append(WriteAheadLog.COMMENT, ModelCodec.encodeComment(taskId, comment));
+        }
+        return append(taskId, comment);
+    }
+
+    private int append(UUID taskId, Comment comment) {
+        List<Comment> log = commentsByTaskId.computeIfAbsent(taskId,
+                id -> new ArrayList<>(history.findComments(id)));
+        synchronized (log) {
+            log.add(comment);
+            return log.size() - 1;
+        }
+    }
+
+    // The task's log, or null if it has no comments
+    private List<Comment> logOf(UUID taskId) {
+        return commentsByTaskId.computeIfAbsent(taskId, id -> {
+            List<Comment> archived = history.findComments(id);
+            return archived.isEmpty() ? null : new ArrayList<>(archived);
+        });
+    }
+
+    public int countByTaskId(UUID taskId) {
+        List<Comment> log = logOf(taskId);
+        if (log == null) {
+            return 0;
+        }
+        synchronized (log) {
+            return log.size();
+        }
+    }
+
+    // Up to `limit` comments at positions before `beforePosition`, newest first
+    public List<Comment> findNewestBefore(UUID taskId, int beforePosition, int limit) {
+        List<Comment> log = logOf(taskId);
+        if (log == null || limit <= 0) {
+            return new ArrayList<>();
+        }
+        synchronized (log) {
+            int end = Math.min(beforePosition, log.size());
+            int start = Math.max(0, end - limit);
+            List<Comment> page = new ArrayList<>(log.subList(start, end));
+            Collections.reverse(page);
+            return page;
+        }
+    }
+
+    // All comments of a task, oldest first
+    public List<Comment> findByTaskId(UUID taskId) {
+        List<Comment> log = logOf(taskId);
+        if (log == null) {
+            return new ArrayList<>();
+        }
+        synchronized (log) {
+            return new ArrayList<>(log);
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package repositories;
+
+import codec.ModelCodec;
+import codec.ModelWriter;
+import models.ActivityEvent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Activity log kept off-heap in fixed-size memory-mapped segment files
+// (segment-000000.seg, ...). The heap only holds a per-task list of record addresses;
+// events are decoded when they are read.
+//
+// Segment: [int magic][int format] then records.
+// Record: [int payloadLength][int crc32][long taskMsb][long taskLsb][long epochSecond][int nano][payload]
+// The CRC covers everything after itself. A zero length marks the end of a segment's
+// data. Nothing orders the write-back of mapped pages, so after a crash a record may be
+// partly on disk: reopening rebuilds the address index from the record headers, checks
+// each record's CRC (without decoding the payload) and stops at the first bad one,
+// zeroing the rest of the segment so later appends are not mistaken for it.
+//
+// The segment files are this repository's own storage, so it does not use the
+// write-ahead log. Thread-safe: appends are serialized. Readers find records through
+// the per-task address lists or the published end, both written after the record.
+public class MappedActivityEventRepository implements ActivityStore, AutoCloseable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private static final int MAGIC = 0x54414354; // "TACT"
+    private static final int FORMAT_VERSION = 1;
+    private static final int SEGMENT_HEADER = 4 + 4;
+    private static final int HEADER = 4 + 4 + 8 + 8 + 8 + 4;
+
+    private final Path dir;
+    private final int segmentSize;
+
+    private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+    private final Map<UUID, Addresses> addressesByTaskId = new ConcurrentHashMap<>();
+
+    private final Object writeLock = new Object();
+    private int writeOffset;  // guarded by writeLock: next free byte in the last segment
+    private long recordCount; // guarded by writeLock
+    private volatile long end; // address just past the last complete record, for findAll
+
+    public MappedActivityEventRepository(Path dir) {
+        this(dir, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public MappedActivityEventRepository(Path dir, int segmentSize) {
+        if (segmentSize <= SEGMENT_HEADER + HEADER) {
+            throw new IllegalArgumentException("Segment size is too small: " + segmentSize);
+        }
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(dir);
+            for (Path file : listSegments()) {
+                segments.add(map(file));
+                writeOffset = scan(segments.size() - 1, file);
+            }
+            end = address(Math.max(0, segments.size() - 1), writeOffset);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open activity segments in " + dir, e);
+        }
+    }
+
+    @Override
+    public ActivityEvent save(ActivityEvent event) {
+        synchronized (writeLock) {
+            if (segments.isEmpty()) {
+                roll();
+            }
+            int length = encodeAt(event);
+            if (length < 0) {
+                roll();
+                length = encodeAt(event);
+                if (length < 0) {
+                    throw new IllegalArgumentException("Activity event too large for a segment of " + segmentSize + " bytes");
+                }
+            }
+            int segment = segments.size() - 1;
+            int offset = writeOffset;
+            MappedByteBuffer buffer = segments.get(segment);
+
+            buffer.putLong(offset + 8, event.getTaskId().getMostSignificantBits());
+            buffer.putLong(offset + 16, event.getTaskId().getLeastSignificantBits());
+            buffer.putLong(offset + 24, event.getTimestamp().getEpochSecond());
+            buffer.putInt(offset + 32, event.getTimestamp().getNano());
+            buffer.putInt(offset + 4, crc(buffer, offset, length));
+            buffer.putInt(offset, length);
+
+            writeOffset = offset + HEADER + length;
+            recordCount++;
+            end = address(segment, writeOffset); // publish
+            addressesFor(event.getTaskId()).add(address(segment, offset), event.getTimestamp(), this::timestampAt);
+        }
+        return event;
+    }
+
+    // Caller holds writeLock. Encodes the payload directly into the current segment;
+    // returns its length, or -1 when it does not fit in the space left.
+    private int encodeAt(ActivityEvent event) {
+        int payloadStart = writeOffset + HEADER;
+        if (payloadStart >= segmentSize) {
+            return -1;
+        }
+        ByteBuffer target = segments.get(segments.size() - 1).slice(payloadStart, segmentSize - payloadStart);
+        try {
+            return new ModelWriter(target).writeActivity(event).size();
+        } catch (BufferOverflowException e) {
+            return -1;
+        }
+    }
+
+    // All events of a task, oldest first
+    @Override
+    public List<ActivityEvent> findByTaskId(UUID taskId) {
+        return decodeAll(addresses(taskId), 0);
+    }
+
+    // The last n events of a task, oldest first
+    @Override
+    public List<ActivityEvent> findLastByTaskId(UUID taskId, int n) {
+        if (n <= 0) {
+            return new ArrayList<>();
+        }
+        long[] addresses = addresses(taskId);
+        return decodeAll(addresses, Math.max(0, addresses.length - n));
+    }
+
+    // Events of a task with timestamp >= since, oldest first. Binary search over the
+    // record headers, so only the returned events are decoded.
+    @Override
+    public List<ActivityEvent> findByTaskIdSince(UUID taskId, Instant since) {
+        long[] addresses = addresses(taskId);
+        int lo = 0;
+        int hi = addresses.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (timestampAt(addresses[mid]).isBefore(since)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return decodeAll(addresses, lo);
+    }
+
+    // Every event in append order, up to the last one published; decodes the whole log
+    @Override
+    public List<ActivityEvent> findAll() {
+        long last = end;
+        List<ActivityEvent> all = new ArrayList<>();
+        for (int segment = 0; segment < segments.size() && segment <= (int) (last >>> 32); segment++) {
+            MappedByteBuffer buffer = segments.get(segment);
+            int limit = segment == (int) (last >>> 32) ? offsetOf(last) : segmentSize;
+            int offset = SEGMENT_HEADER;
+            int length;
+            while (offset + HEADER <= limit && (length = buffer.getInt(offset)) > 0) {
+                all.add(decode(buffer, offset, length));
+                offset += HEADER + length;
+            }
+        }
+        return all;
+    }
+
+    public long count() {
+        synchronized (writeLock) {
+            return recordCount;
+        }
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    // Forces written events in every segment to disk
+    public void flush() {
+        for (MappedByteBuffer buffer : segments) {
+            buffer.force();
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+    // ---------------- Segments ----------------
+    // Caller holds writeLock
+    private void roll() {
+        Path file = dir.resolve(String.format("segment-%06d.seg", segments.size()));
+        try {
+            MappedByteBuffer buffer = map(file);
+            buffer.putInt(0, MAGIC).putInt(4, FORMAT_VERSION);
+            segments.add(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create activity segment " + file, e);
+        }
+        writeOffset = SEGMENT_HEADER;
+    }
+
+    private MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files
+                    .filter(p -> p.getFileName().toString().matches("segment-\\d{6}\\.seg"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    // Indexes a segment's intact records from their headers; returns the end of its data.
+    // Anything after the first record that fails its CRC is zeroed.
+    private int scan(int segment, Path file) {
+        MappedByteBuffer buffer = segments.get(segment);
+        int magic = buffer.getInt(0);
+        if (magic == 0) {
+            buffer.putInt(0, MAGIC).putInt(4, FORMAT_VERSION); // created but never written
+        } else if (magic != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IllegalStateException("Not an activity segment (or an unsupported format): " + file);
+        }
+
+        int offset = SEGMENT_HEADER;
+        int length;
+        while (offset + HEADER <= segmentSize && (length = buffer.getInt(offset)) != 0) {
+            if (length < 0 || offset + HEADER + length > segmentSize
+                    || buffer.getInt(offset + 4) != crc(buffer, offset, length)) {
+                for (int i = offset; i < segmentSize; i++) {
+                    buffer.put(i, (byte) 0); // torn tail
+                }
+                break;
+            }
+            UUID taskId = new UUID(buffer.getLong(offset + 8), buffer.getLong(offset + 16));
+            Instant timestamp = Instant.ofEpochSecond(buffer.getLong(offset + 24), buffer.getInt(offset + 32));
+            addressesFor(taskId).add(address(segment, offset), timestamp, this::timestampAt);
+            recordCount++;
+            offset += HEADER + length;
+        }
+        return offset;
+    }
+
+    // CRC32 of a record's header after the checksum field, and its payload
+    private static int crc(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset + 8, HEADER - 8 + length));
+        return (int) crc.getValue();
+    }
+
+    // ---------------- Addressing ----------------
+    private static long address(int segment, int offset) {
+        return ((long) segment << 32) | offset;
+    }
+
+    private MappedByteBuffer segmentOf(long address) {
+        return segments.get((int) (address >>> 32));
+    }
+
+    private static int offsetOf(long address) {
+        return (int) address;
+    }
+
+    private Instant timestampAt(long address) {
+        MappedByteBuffer buffer = segmentOf(address);
+        int offset = offsetOf(address);
+        return Instant.ofEpochSecond(buffer.getLong(offset + 24), buffer.getInt(offset + 32));
+    }
+
+    private List<ActivityEvent> decodeAll(long[] addresses, int from) {
+        List<ActivityEvent> events = new ArrayList<>(addresses.length - from);
+        for (int i = from; i < addresses.length; i++) {
+            MappedByteBuffer buffer = segmentOf(addresses[i]);
+            int offset = offsetOf(addresses[i]);
+            events.add(decode(buffer, offset, buffer.getInt(offset)));
+        }
+        return events;
+    }
+
+    // Decodes straight from the mapped segment
+    private static ActivityEvent decode(ByteBuffer buffer, int offset, int length) {
+        return ModelCodec.decodeActivity(buffer.slice(offset + HEADER, length));
+    }
+
+    private long[] addresses(UUID taskId) {
+        Addresses addresses = addressesByTaskId.get(taskId);
+        return addresses == null ? new long[0] : addresses.toArray();
+    }
+
+    private Addresses addressesFor(UUID taskId) {
+        return addressesByTaskId.computeIfAbsent(taskId, id -> new Addresses());
+    }
+
+    // Growable long array of record addresses in timestamp order (ties in append order).
+    // Concurrent writers stamp events before saving them, so a late arrival is inserted
+    // in place, comparing against the timestamps in the record headers.
+    private static final class Addresses {
+
+        private long[] values = new long[4];
+        private int size;
+
+        synchronized void add(long address, Instant timestamp, LongFunction<Instant> timestampAt) {
+            int at = size;
+            if (size > 0 && timestampAt.apply(values[size - 1]).isAfter(timestamp)) {
+                int lo = 0;
+                int hi = size;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (timestampAt.apply(values[mid]).isAfter(timestamp)) {
+                        hi = mid;
+                    } else {
+                        lo = mid + 1;
+                    }
+                }
+                at = lo;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            System.arraycopy(values, at, values, at + 1, size - at);
+            values[at] = address;
+            size++;
+        }
+
+        synchronized long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
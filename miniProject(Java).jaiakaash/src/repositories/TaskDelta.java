@@ -0,0 +1,131 @@
+package repositories;
+
+import enums.Priority;
+import enums.Status;
+import models.Task;
+import models.User;
+
+import java.time.Instant;
+import java.util.*;
+
+// Field-level difference between a task version and its predecessor.
+// Only changed fields are stored, packed in field order behind a bitmask.
+final class TaskDelta {
+
+    private static final int TITLE = 1;
+    private static final int DESCRIPTION = 1 << 1;
+    private static final int STATUS = 1 << 2;
+    private static final int PRIORITY = 1 << 3;
+    private static final int CREATED_BY = 1 << 4;
+    private static final int ASSIGNED_TO = 1 << 5;
+    private static final int DUE_DATE = 1 << 6;
+    private static final int TAGS = 1 << 7;
+    private static final int COMMENT_COUNT = 1 << 8;
+    private static final int CREATED_AT = 1 << 9;
+
+    private static final Object[] NONE = new Object[0];
+
+    private final int mask;
+    private final Object[] values;
+    private final Instant updatedAt;
+
+    private TaskDelta(int mask, Object[] values, Instant updatedAt) {
+        this.mask = mask;
+        this.values = values;
+        this.updatedAt = updatedAt;
+    }
+
+    static TaskDelta diff(Task prev, Task next) {
+        int mask = 0;
+        List<Object> changed = new ArrayList<>(2);
+
+        if (!Objects.equals(prev.getTitle(), next.getTitle())) {
+            mask |= TITLE;
+            changed.add(next.getTitle());
+        }
+        if (!Objects.equals(prev.getDescription(), next.getDescription())) {
+            mask |= DESCRIPTION;
+            changed.add(next.getDescription());
+        }
+        if (prev.getStatus() != next.getStatus()) {
+            mask |= STATUS;
+            changed.add(next.getStatus());
+        }
+        if (prev.getPriority() != next.getPriority()) {
+            mask |= PRIORITY;
+            changed.add(next.getPriority());
+        }
+        if (prev.getCreatedBy() != next.getCreatedBy()) {
+            mask |= CREATED_BY;
+            changed.add(next.getCreatedBy());
+        }
+        if (prev.getAssignedTo().orElse(null) != next.getAssignedTo().orElse(null)) {
+            mask |= ASSIGNED_TO;
+            changed.add(next.getAssignedTo().orElse(null));
+        }
+        if (!prev.getDueDate().equals(next.getDueDate())) {
+            mask |= DUE_DATE;
+            changed.add(next.getDueDate().orElse(null));
+        }
+        if (!prev.getTags().equals(next.getTags())) {
+            mask |= TAGS;
+            changed.add(next.getTags());
+        }
+
+        if (prev.getCommentCount() != next.getCommentCount()) {
+            mask |= COMMENT_COUNT;
+            changed.add(next.getCommentCount());
+        }
+
+        if (!Objects.equals(prev.getCreatedAt(), next.getCreatedAt())) {
+            mask |= CREATED_AT;
+            changed.add(next.getCreatedAt());
+        }
+
+        return new TaskDelta(mask, changed.isEmpty() ? NONE : changed.toArray(), next.getUpdatedAt());
+    }
+
+    // Rebuilds the version this delta was taken for from its predecessor
+    @SuppressWarnings("unchecked")
+    Task apply(Task prev) {
+        int i = 0;
+
+        String title = prev.getTitle();
+        String description = prev.getDescription();
+        Status status = prev.getStatus();
+        Priority priority = prev.getPriority();
+        User createdBy = prev.getCreatedBy();
+        User assignedTo = prev.getAssignedTo().orElse(null);
+        Instant dueDate = prev.getDueDate().orElse(null);
+        List<String> tags = prev.getTags();
+        int commentCount = prev.getCommentCount();
+        Instant createdAt = prev.getCreatedAt();
+
+        if ((mask & TITLE) != 0) title = (String) values[i++];
+        if ((mask & DESCRIPTION) != 0) description = (String) values[i++];
+        if ((mask & STATUS) != 0) status = (Status) values[i++];
+        if ((mask & PRIORITY) != 0) priority = (Priority) values[i++];
+        if ((mask & CREATED_BY) != 0) createdBy = (User) values[i++];
+        if ((mask & ASSIGNED_TO) != 0) assignedTo = (User) values[i++];
+        if ((mask & DUE_DATE) != 0) dueDate = (Instant) values[i++];
+        if ((mask & TAGS) != 0) tags = (List<String>) values[i++];
+        if ((mask & COMMENT_COUNT) != 0) commentCount = (Integer) values[i++];
+        if ((mask & CREATED_AT) != 0) createdAt = (Instant) values[i++];
+
+        return Task.builder()
+                .id(prev.getId())
+                .version(prev.getVersion() + 1)
+                .title(title)
+                .description(description)
+                .status(status)
+                .priority(priority)
+                .createdBy(createdBy)
+                .assignedTo(assignedTo)
+                .dueDate(dueDate)
+                .tags(tags)
+                .commentCount(commentCount)
+                .createdAt(createdAt)
+                .updatedAt(updatedAt)
+                .build();
+    }
+}
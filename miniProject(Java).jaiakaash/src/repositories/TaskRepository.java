@@ -1,38 +1,425 @@
 package repositories;
 
+import codec.ModelCodec;
+import enums.Priority;
+import enums.Status;
+import indexes.AssigneeIndex;
+import indexes.EnumBitSetIndex;
+import indexes.InstantIndex;
+import indexes.TagIndex;
 import models.Task;
+import models.User;
+import persistence.HistoryStore;
+import persistence.Snapshot;
+import persistence.WriteAheadLog;
 
+import java.time.Instant;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+// Thread-safe. Writes to a task are serialized by a lock stripe chosen from the task id,
+// so saves of different tasks proceed in parallel. Latest-version reads are lock-free.
+// The shared secondary indexes sit behind a read/write lock that is held only while
+// they are updated or queried.
 public class TaskRepository {
 
-    // Stores ALL versions of ALL tasks
-    private final List<Task> tasks = new ArrayList<>();
+    private static final int STRIPES = 64;
 
-    // Save a task version
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final ReadWriteLock indexLock = new ReentrantReadWriteLock();
+
+    // Head of each version chain (task id -> latest version)
+    private final Map<UUID, Task> latestById = new ConcurrentHashMap<>();
+
+    // Per-task version chains (keyframes + field deltas), appended in version order.
+    // A chain is only touched while holding its task's stripe lock. A task restored from
+    // a snapshot starts its chain at the snapshot's head; older versions are in history.
+    private final Map<UUID, TaskVersionChain> versionsById = new ConcurrentHashMap<>();
+    private final HistoryStore history;
+
+    // ---- Guarded by indexLock ----
+    // Dense ordinal per task (assigned on first save) used by the bitset indexes.
+    // latestByOrdinal, in creation order, is the materialized "current tasks" view.
+    private final Map<UUID, Integer> ordinalById = new HashMap<>();
+    private final List<Task> latestByOrdinal = new ArrayList<>();
+
+    // Secondary indexes over latest versions
+    private final EnumBitSetIndex<Status> statusIndex = new EnumBitSetIndex<>(Status.class);
+    private final EnumBitSetIndex<Priority> priorityIndex = new EnumBitSetIndex<>(Priority.class);
+    private final TagIndex tagIndex = new TagIndex();
+    private final AssigneeIndex assigneeIndex = new AssigneeIndex();
+
+    // Due dates of non-terminal (OPEN / IN_PROGRESS) tasks only
+    private final InstantIndex dueDateIndex = new InstantIndex();
+
+    // Time-range indexes: creation, last modification, and the moment a task became COMPLETED
+    private final InstantIndex createdAtIndex = new InstantIndex();
+    private final InstantIndex updatedAtIndex = new InstantIndex();
+    private final InstantIndex completedAtIndex = new InstantIndex();
+
+    // Optional durability: versions are logged before they become visible
+    private final WriteAheadLog wal;
+
+    public TaskRepository() {
+        this(null, null);
+    }
+
+    // Rebuilds the repository from the log's TASK records, then logs every new save
+    public TaskRepository(WriteAheadLog wal) {
+        this(wal, null);
+    }
+
+    // Restores the snapshot's latest tasks (in ordinal order, so the indexes are rebuilt
+    // as they were), then replays only the log tail written after the snapshot. Versions
+    // before the snapshot are read from its history store on demand.
+    public TaskRepository(WriteAheadLog wal, Snapshot snapshot) {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.wal = wal;
+        this.history = snapshot == null ? HistoryStore.empty() : snapshot.getHistory();
+
+        if (snapshot != null) {
+            for (Task head : snapshot.getTasks()) {
+                restore(head, snapshot.getCompletedAt().get(head.getId()));
+            }
+        }
+        if (wal != null) {
+            wal.replay(
+                    snapshot == null ? 0 : snapshot.getLogOffset(),
+                    snapshot == null ? 0 : snapshot.getLsn(),
+                    (type, lsn, payload) -> {
+                        if (type == WriteAheadLog.TASK) {
+                            store(ModelCodec.decodeTask(payload), false, null);
+                        }
+                    });
+        }
+    }
+
+    // Save a task version (must be exactly head version + 1, or 1 for a new task).
+    // The check and the append happen under the task's stripe lock, i.e. compare-and-set.
     public Task save(Task task) {
-        tasks.add(task);
-        return task;
+        return store(task, wal != null, null);
+    }
+
+    // Like save(task), but runs afterLog under the task's stripe lock once the version
+    // is in the log, before it becomes visible. Work done there is ordered with the
+    // task's versions and is never done for a version that failed its check or its log
+    // append. If afterLog throws, the version is not applied (it is in the log, whose
+    // writes only fail for good).
+    public Task save(Task task, Runnable afterLog) {
+        return store(task, wal != null, afterLog);
+    }
+
+    private Task store(Task task, boolean log, Runnable afterLog) {
+        ReentrantLock lock = stripeFor(task.getId());
+        lock.lock();
+        try {
+            Task head = latestById.get(task.getId());
+            int expected = head == null ? 1 : head.getVersion() + 1;
+
+            if (task.getVersion() != expected) {
+                // the caller built on a head that is no longer current
+                throw new VersionConflictException(task.getId(), task.getVersion() - 1, expected - 1);
+            }
+
+            if (log) {
+                wal.append(WriteAheadLog.TASK, ModelCodec.encodeTask(task));
+            }
+
+            if (afterLog != null) {
+                afterLog.run();
+            }
+
+            versionsById.computeIfAbsent(task.getId(), id -> new TaskVersionChain(task.getVersion())).append(task);
+
+            boolean wasCompleted = head != null && head.getStatus() == Status.COMPLETED;
+            Instant completedAt = !wasCompleted && task.getStatus() == Status.COMPLETED
+                    ? task.getUpdatedAt()
+                    : null;
+
+            indexLock.writeLock().lock();
+            try {
+                updateIndexes(head, task, completedAt);
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+
+            latestById.put(task.getId(), task);
+            return task;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Starts a task's chain at its snapshot head and indexes it. completedAt is when
+    // the task moved to COMPLETED (null if it never did).
+    private void restore(Task head, Instant completedAt) {
+        TaskVersionChain chain = new TaskVersionChain(head.getVersion());
+        chain.append(head);
+        versionsById.put(head.getId(), chain);
+        indexLock.writeLock().lock();
+        try {
+            updateIndexes(null, head, completedAt);
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+        latestById.put(head.getId(), head);
+    }
+
+    private ReentrantLock stripeFor(UUID taskId) {
+        int h = taskId.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    // Runs a read of the secondary indexes under the shared lock
+    private <T> T readIndexes(Supplier<T> query) {
+        indexLock.readLock().lock();
+        try {
+            return query.get();
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    // Runs a read of one task's chain under its stripe lock
+    private <T> T readChain(UUID taskId, Function<TaskVersionChain, T> query) {
+        ReentrantLock lock = stripeFor(taskId);
+        lock.lock();
+        try {
+            return query.apply(versionsById.get(taskId));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // completedAt: when the task reached COMPLETED, if it did so in this update
+    private void updateIndexes(Task previous, Task current, Instant completedAt) {
+        Integer ordinal = ordinalById.get(current.getId());
+        if (ordinal == null) {
+            ordinal = latestByOrdinal.size();
+            ordinalById.put(current.getId(), ordinal);
+            latestByOrdinal.add(current);
+        } else {
+            latestByOrdinal.set(ordinal, current);
+        }
+
+        statusIndex.update(ordinal,
+                previous == null ? null : previous.getStatus(), current.getStatus());
+        priorityIndex.update(ordinal,
+                previous == null ? null : previous.getPriority(), current.getPriority());
+        tagIndex.update(current.getId(),
+                previous == null ? null : previous.getTags(), current.getTags());
+        assigneeIndex.update(current.getId(),
+                previous == null ? null : assigneeId(previous),
+                previous == null ? null : previous.getStatus(),
+                assigneeId(current), current.getStatus());
+        dueDateIndex.update(current.getId(),
+                previous == null ? null : pendingDueDate(previous), pendingDueDate(current));
+        createdAtIndex.update(current.getId(),
+                previous == null ? null : previous.getCreatedAt(), current.getCreatedAt());
+        updatedAtIndex.update(current.getId(),
+                previous == null ? null : previous.getUpdatedAt(), current.getUpdatedAt());
+
+        if (completedAt != null) {
+            completedAtIndex.update(current.getId(), null, completedAt);
+        }
+    }
+
+    private static Instant pendingDueDate(Task task) {
+        if (task.getStatus() == Status.COMPLETED || task.getStatus() == Status.CANCELLED) {
+            return null;
+        }
+        return task.getDueDate().orElse(null);
+    }
+
+    private static UUID assigneeId(Task task) {
+        return task.getAssignedTo().map(User::getId).orElse(null);
     }
 
     // Find latest version of a task by ID
     public Optional<Task> findLatestById(UUID taskId) {
-        return tasks.stream()
-                .filter(t -> t.getId().equals(taskId))
-                .max(Comparator.comparingInt(Task::getVersion));
+        return Optional.ofNullable(latestById.get(taskId));
     }
 
-    // Find all versions of a task (history)
+    // Find all versions of a task (history, oldest first)
     public List<Task> findAllVersions(UUID taskId) {
-        return tasks.stream()
-                .filter(t -> t.getId().equals(taskId))
-                .sorted(Comparator.comparingInt(Task::getVersion))
-                .collect(Collectors.toList());
+        return findVersionRange(taskId, 1, Integer.MAX_VALUE);
+    }
+
+    // Find a single version of a task
+    public Optional<Task> findVersion(UUID taskId, int version) {
+        List<Task> found = findVersionRange(taskId, version, version);
+        return found.isEmpty() ? Optional.empty() : Optional.of(found.get(0));
+    }
+
+    // Find versions fromVersion..toVersion (inclusive, clamped to the known versions).
+    // Versions older than the chain come from the history store.
+    public List<Task> findVersionRange(UUID taskId, int fromVersion, int toVersion) {
+        int[] firstInChain = {1};
+        List<Task> recent = readChain(taskId, chain -> {
+            if (chain == null) {
+                return new ArrayList<>();
+            }
+            firstInChain[0] = chain.firstVersion();
+            int from = Math.max(fromVersion, chain.firstVersion());
+            int to = Math.min(toVersion, chain.lastVersion());
+            if (from > to) {
+                return new ArrayList<>();
+            }
+            return chain.range(from, to);
+        });
+        if (fromVersion >= firstInChain[0]) {
+            return recent;
+        }
+
+        List<Task> result = new ArrayList<>();
+        for (Task archived : history.findTaskVersions(taskId)) {
+            int v = archived.getVersion();
+            if (v >= fromVersion && v <= toVersion && v < firstInChain[0]) {
+                result.add(archived);
+            }
+        }
+        result.addAll(recent);
+        return result;
+    }
+
+    // Get the latest version of every task
+    public List<Task> findAllLatest() {
+        return readIndexes(() -> new ArrayList<>(latestByOrdinal));
+    }
+
+    // Latest tasks whose status is one of the given statuses
+    public List<Task> findLatestByStatuses(Set<Status> statuses) {
+        return readIndexes(() -> resolve(statusIndex.union(statuses)));
+    }
+
+    // Latest tasks whose priority is one of the given priorities
+    public List<Task> findLatestByPriorities(Set<Priority> priorities) {
+        return readIndexes(() -> resolve(priorityIndex.union(priorities)));
+    }
+
+    // Latest tasks matching both sets (bitset intersection)
+    public List<Task> findLatestByStatusesAndPriorities(Set<Status> statuses,
+                                                        Set<Priority> priorities) {
+        return readIndexes(() -> {
+            BitSet matches = statusIndex.union(statuses);
+            matches.and(priorityIndex.union(priorities));
+            return resolve(matches);
+        });
+    }
+
+    public int countByStatusesAndPriorities(Set<Status> statuses, Set<Priority> priorities) {
+        return readIndexes(() -> {
+            BitSet matches = statusIndex.union(statuses);
+            matches.and(priorityIndex.union(priorities));
+            return matches.cardinality();
+        });
+    }
+
+    public int countByStatuses(Set<Status> statuses) {
+        return readIndexes(() -> statusIndex.count(statuses));
+    }
+
+    public int countByPriorities(Set<Priority> priorities) {
+        return readIndexes(() -> priorityIndex.count(priorities));
+    }
+
+    // Latest tasks carrying all of the given tags (all tasks for an empty set)
+    public List<Task> findLatestByTags(Set<String> tags) {
+        if (tags.isEmpty()) {
+            return findAllLatest();
+        }
+        return readIndexes(() -> resolve(tagIndex.matchAll(tags)));
+    }
+
+    public int estimateByTags(Set<String> tags) {
+        return tags.isEmpty() ? latestById.size() : readIndexes(() -> tagIndex.estimate(tags));
+    }
+
+    // Latest tasks assigned to the given user
+    public List<Task> findLatestByAssignee(UUID userId) {
+        return readIndexes(() -> resolve(assigneeIndex.assignedTo(userId)));
+    }
+
+    public boolean hasActiveTasks(UUID userId) {
+        return readIndexes(() -> !assigneeIndex.activeFor(userId).isEmpty());
+    }
+
+    // Latest assigned tasks grouped by assignee id, read in one consistent pass
+    public Map<UUID, List<Task>> findLatestGroupedByAssignee() {
+        return readIndexes(() -> {
+            Map<UUID, List<Task>> grouped = new LinkedHashMap<>();
+            for (UUID userId : assigneeIndex.assignees()) {
+                List<Task> tasks = resolve(assigneeIndex.assignedTo(userId));
+                if (!tasks.isEmpty()) {
+                    grouped.put(userId, tasks);
+                }
+            }
+            return grouped;
+        });
+    }
+
+    public int countByAssignee(UUID userId) {
+        return readIndexes(() -> assigneeIndex.assignedTo(userId).size());
+    }
+
+    // Non-terminal latest tasks whose due date is before the given instant, earliest due first
+    public List<Task> findOverdue(Instant asOf) {
+        return readIndexes(() -> resolve(dueDateIndex.before(asOf)));
+    }
+
+    public int countOverdue(Instant asOf) {
+        return readIndexes(() -> dueDateIndex.countBefore(asOf));
+    }
+
+    // Latest tasks created within [from, to]
+    public List<Task> findCreatedBetween(Instant from, Instant to) {
+        return readIndexes(() -> resolve(createdAtIndex.between(from, to)));
+    }
+
+    // Latest tasks whose latest version was written within [from, to]
+    public List<Task> findModifiedBetween(Instant from, Instant to) {
+        return readIndexes(() -> resolve(updatedAtIndex.between(from, to)));
+    }
+
+    // Latest tasks that moved to COMPLETED within [from, to]
+    public List<Task> findCompletedBetween(Instant from, Instant to) {
+        return readIndexes(() -> resolve(completedAtIndex.between(from, to)));
+    }
+
+    // resolve(...) must be called while holding indexLock
+    private List<Task> resolve(Collection<UUID> ids) {
+        List<Task> result = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            result.add(latestByOrdinal.get(ordinalById.get(id)));
+        }
+        return result;
+    }
+
+    private List<Task> resolve(BitSet ordinals) {
+        List<Task> result = new ArrayList<>(ordinals.cardinality());
+        for (int i = ordinals.nextSetBit(0); i >= 0; i = ordinals.nextSetBit(i + 1)) {
+            result.add(latestByOrdinal.get(i));
+        }
+        return result;
+    }
+
+    public int countLatest() {
+        return latestById.size();
     }
 
-    // Get all tasks (all versions)
+    // Get all tasks (all versions), grouped by task
     public List<Task> findAll() {
-        return new ArrayList<>(tasks);
+        List<Task> all = new ArrayList<>();
+        for (UUID taskId : versionsById.keySet()) {
+            all.addAll(findAllVersions(taskId));
+        }
+        return all;
     }
 }
@@ -0,0 +1,70 @@
+package repositories;
+
+import models.Task;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Versions of one task from firstVersion on, oldest first (versions before it were
+// archived by a checkpoint). Every KEYFRAME_INTERVAL-th version is stored in full; the
+// ones in between are stored as a TaskDelta against their predecessor. The head is
+// always kept in full. Not thread-safe: callers hold the task's stripe lock.
+final class TaskVersionChain {
+
+    static final int KEYFRAME_INTERVAL = 16;
+
+    // entries.get(v - first) is a Task (keyframe) or a TaskDelta for version v
+    private final List<Object> entries = new ArrayList<>();
+    private final int first;
+    private Task head;
+
+    TaskVersionChain(int firstVersion) {
+        this.first = firstVersion;
+    }
+
+    void append(Task task) {
+        if (entries.size() % KEYFRAME_INTERVAL == 0) {
+            entries.add(task);
+        } else {
+            entries.add(TaskDelta.diff(head, task));
+        }
+        head = task;
+    }
+
+    int firstVersion() {
+        return first;
+    }
+
+    int lastVersion() {
+        return first + entries.size() - 1;
+    }
+
+    // version must be within firstVersion()..lastVersion()
+    Task get(int version) {
+        if (version == lastVersion()) {
+            return head;
+        }
+        int keyframe = (version - first) / KEYFRAME_INTERVAL * KEYFRAME_INTERVAL;
+        Task task = (Task) entries.get(keyframe);
+        for (int i = keyframe + 1; i <= version - first; i++) {
+            task = ((TaskDelta) entries.get(i)).apply(task);
+        }
+        return task;
+    }
+
+    // Versions from..to inclusive (within firstVersion()..lastVersion()), rebuilt in one
+    // forward pass
+    List<Task> range(int from, int to) {
+        List<Task> result = new ArrayList<>(to - from + 1);
+        Task task = get(from);
+        result.add(task);
+        for (int v = from + 1; v <= to; v++) {
+            Object entry = entries.get(v - first);
+            task = v == lastVersion() ? head
+                    : entry instanceof Task ? (Task) entry
+                    : ((TaskDelta) entry).apply(task);
+            result.add(task);
+        }
+        return result;
+    }
+}
@@ -1,38 +1,208 @@
 package repositories;
 
+import codec.ModelCodec;
 import models.User;
+import persistence.Snapshot;
+import persistence.WriteAheadLog;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantLock;
 
+// Thread-safe. Users are held in a concurrent map keyed by id, with a hash index on the
+// normalized (trimmed, lower-cased) email and one sorted view per listing order.
+// Writes to a user are serialized by a lock stripe chosen from the user id; email
+// uniqueness is claimed atomically in the index.
 public class UserRepository {
 
-    private final List<User> users = new ArrayList<>();
+    // Listing orders; ties are broken by id so each order is total
+    public enum SortOrder {
+        NAME(Comparator.comparing(User::getName, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER))),
+        EMAIL(Comparator.comparing(User::getEmail, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER))),
+        ROLE(Comparator.comparing(u -> u.getRole() == null ? "" : u.getRole().name())),
+        CREATED_AT(Comparator.comparing(User::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder())));
 
+        private final Comparator<User> comparator;
 
+        SortOrder(Comparator<User> key) {
+            this.comparator = key.thenComparing(User::getId);
+        }
+
+        public Comparator<User> comparator() {
+            return comparator;
+        }
+    }
+
+    private static final int STRIPES = 64;
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    private final Map<UUID, User> users = new ConcurrentHashMap<>();
+    private final Map<String, UUID> idByEmail = new ConcurrentHashMap<>();
+    private final Map<SortOrder, NavigableSet<User>> sortedViews = new EnumMap<>(SortOrder.class);
+
+    // Optional durability: saves and deletes are logged before they are applied
+    private final WriteAheadLog wal;
+
+    public UserRepository() {
+        this(null, null);
+    }
+
+    // Rebuilds the repository from the log's USER records, then logs every change
+    public UserRepository(WriteAheadLog wal) {
+        this(wal, null);
+    }
+
+    // Restores the snapshot's users, then replays only the log records written after it
+    public UserRepository(WriteAheadLog wal, Snapshot snapshot) {
+        this.wal = wal;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        for (SortOrder order : SortOrder.values()) {
+            sortedViews.put(order, new ConcurrentSkipListSet<>(order.comparator()));
+        }
+        if (snapshot != null) {
+            for (User user : snapshot.getUsers()) {
+                apply(user);
+            }
+        }
+        if (wal != null) {
+            long fromOffset = snapshot == null ? 0 : snapshot.getLogOffset();
+            long afterLsn = snapshot == null ? 0 : snapshot.getLsn();
+            wal.replay(fromOffset, afterLsn, (type, lsn, payload) -> {
+                if (type == WriteAheadLog.USER) {
+                    apply(ModelCodec.decodeUser(payload));
+                } else if (type == WriteAheadLog.USER_DELETED) {
+                    remove(ModelCodec.decodeUuid(payload));
+                }
+            });
+        }
+    }
+
+    // Throws IllegalStateException when another user already has the same email
+    // (compared case-insensitively)
     public User save(User user) {
-        deleteById(user.getId());
-        users.add(user);
-        return user;
+        ReentrantLock lock = stripeFor(user.getId());
+        lock.lock();
+        try {
+            String email = normalize(user.getEmail());
+            boolean claimed = false;
+            if (email != null) {
+                UUID owner = idByEmail.putIfAbsent(email, user.getId());
+                if (owner != null && !owner.equals(user.getId())) {
+                    throw new IllegalStateException("Email already in use: " + user.getEmail());
+                }
+                claimed = owner == null;
+            }
+
+            if (wal != null) {
+                try {
+                    wal.append(WriteAheadLog.USER, ModelCodec.encodeUser(user));
+                } catch (RuntimeException e) {
+                    if (claimed) {
+                        idByEmail.remove(email, user.getId());
+                    }
+                    throw e;
+                }
+            }
+
+            apply(user);
+            return user;
+        } finally {
+            lock.unlock();
+        }
     }
 
     public Optional<User> findById(UUID id) {
-        return users.stream()
-                .filter(u -> u.getId().equals(id))
-                .findFirst();
+        return Optional.ofNullable(users.get(id));
     }
 
     public Optional<User> findByEmail(String email) {
-        return users.stream()
-                .filter(u -> u.getEmail().equalsIgnoreCase(email))
-                .findFirst();
+        String key = normalize(email);
+        UUID id = key == null ? null : idByEmail.get(key);
+        return id == null ? Optional.empty() : findById(id);
     }
 
     public List<User> findAll() {
-        return new ArrayList<>(users);
+        return new ArrayList<>(users.values());
+    }
+
+    // Up to `limit` users strictly after `after` (null for the start) in the given order.
+    // `after` only needs the fields the order compares on plus the id.
+    public List<User> findSorted(SortOrder order, User after, int limit) {
+        NavigableSet<User> view = sortedViews.get(order);
+        Iterable<User> from = after == null ? view : view.tailSet(after, false);
+        List<User> page = new ArrayList<>(Math.min(limit, users.size()));
+        for (User user : from) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(user);
+        }
+        return page;
     }
 
     public void deleteById(UUID id) {
-        users.removeIf(u -> u.getId().equals(id));
+        ReentrantLock lock = stripeFor(id);
+        lock.lock();
+        try {
+            if (wal != null) {
+                wal.append(WriteAheadLog.USER_DELETED, ModelCodec.encodeUuid(id));
+            }
+            remove(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ---------------- Internals ----------------
+    // Applies a save whose email claim (if any) is already settled; during replay the
+    // log is authoritative, so the claim is simply overwritten
+    private void apply(User user) {
+        String email = normalize(user.getEmail());
+        if (email != null) {
+            idByEmail.put(email, user.getId());
+        }
+        User previous = users.put(user.getId(), user);
+        releaseEmail(previous, email);
+        // remove before add: a version comparing equal to its predecessor would not be added
+        for (NavigableSet<User> view : sortedViews.values()) {
+            if (previous != null) {
+                view.remove(previous);
+            }
+            view.add(user);
+        }
+    }
+
+    private void remove(UUID id) {
+        User previous = users.remove(id);
+        releaseEmail(previous, null);
+        if (previous != null) {
+            for (NavigableSet<User> view : sortedViews.values()) {
+                view.remove(previous);
+            }
+        }
+    }
+
+    // Frees the previous version's email unless the user still holds it
+    private void releaseEmail(User previous, String keep) {
+        if (previous == null) {
+            return;
+        }
+        String old = normalize(previous.getEmail());
+        if (old != null && !old.equals(keep)) {
+            idByEmail.remove(old, previous.getId());
+        }
+    }
+
+    private static String normalize(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private ReentrantLock stripeFor(UUID userId) {
+        int h = userId.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
     }
 }
@@ -0,0 +1,33 @@
+package repositories;
+
+import java.util.UUID;
+
+// Thrown when a task version is saved against a head other than the one it was built from
+public class VersionConflictException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final UUID taskId;
+    private final int expectedVersion;
+    private final int actualVersion;
+
+    public VersionConflictException(UUID taskId, int expectedVersion, int actualVersion) {
+        super("Version conflict on task " + taskId
+                + ": expected version " + expectedVersion + " but was " + actualVersion);
+        this.taskId = taskId;
+        this.expectedVersion = expectedVersion;
+        this.actualVersion = actualVersion;
+    }
+
+    public UUID getTaskId() {
+        return taskId;
+    }
+
+    public int getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public int getActualVersion() {
+        return actualVersion;
+    }
+}
@@ -0,0 +1,86 @@
+package sandbox;
+
+import enums.ActivityType;
+import enums.Role;
+import models.ActivityEvent;
+import models.User;
+import repositories.ActivityEventRepository;
+import repositories.ActivityStore;
+import repositories.MappedActivityEventRepository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.UUID;
+
+// Heap held by the activity log and per-task read latency: on-heap repository versus
+// the memory-mapped segment store.
+public class ActivityStoreRunner {
+
+    private static final int TASKS = 2_000;
+    private static final int EVENTS = 300_000;
+
+    public static void main(String[] args) throws Exception {
+
+        UUID[] taskIds = new UUID[TASKS];
+        for (int i = 0; i < TASKS; i++) {
+            taskIds[i] = UUID.randomUUID();
+        }
+        User actor = User.builder().name("Alice").email("alice@example.com").role(Role.ADMIN).build();
+
+        long baseline = usedHeap();
+        ActivityEventRepository heap = new ActivityEventRepository();
+        fill(heap, taskIds, actor);
+        report("on-heap", heap, baseline, taskIds);
+        heap = null;
+
+        baseline = usedHeap();
+        Path dir = Files.createTempDirectory("activity");
+        try (MappedActivityEventRepository mapped = new MappedActivityEventRepository(dir)) {
+            fill(mapped, taskIds, actor);
+            report("mapped", mapped, baseline, taskIds);
+            System.out.println("segments: " + mapped.getSegmentCount());
+        }
+
+        long begin = System.nanoTime();
+        try (MappedActivityEventRepository reopened = new MappedActivityEventRepository(dir)) {
+            System.out.printf("reopen: %d ms, %d events indexed%n",
+                    (System.nanoTime() - begin) / 1_000_000, reopened.count());
+        }
+    }
+
+    private static void fill(ActivityStore repository, UUID[] taskIds, User actor) {
+        Instant start = Instant.now();
+        for (int n = 0; n < EVENTS; n++) {
+            repository.save(ActivityEvent.builder()
+                    .taskId(taskIds[n % TASKS])
+                    .activityType(ActivityType.values()[n % ActivityType.values().length])
+                    .performedBy(actor)
+                    .timestamp(start.plusMillis(n))
+                    .details("Status changed to IN_PROGRESS")
+                    .build());
+        }
+    }
+
+    private static void report(String name, ActivityStore repository, long baseline, UUID[] taskIds) {
+        long retained = usedHeap() - baseline;
+
+        long begin = System.nanoTime();
+        int read = 0;
+        for (UUID taskId : taskIds) {
+            read += repository.findLastByTaskId(taskId, 10).size();
+        }
+        long micros = (System.nanoTime() - begin) / 1_000 / taskIds.length;
+
+        System.out.printf("%-8s heap=%d MB  last-10 read=%d us/task (%d events)%n",
+                name, retained / (1024 * 1024), micros, read);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
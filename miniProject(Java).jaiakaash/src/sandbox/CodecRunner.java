@@ -0,0 +1,189 @@
+package sandbox;
+
+import codec.ModelReader;
+import codec.ModelWriter;
+import enums.*;
+import models.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.*;
+
+// Round-trip checks for the binary model codec, then encode/decode throughput and size
+// against Java serialization. The models are not Serializable, so the comparison
+// serializes each task's field values (UUID, String, enum, Instant, ...) as an Object[].
+public class CodecRunner {
+
+    private static final int TASKS = 20_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        roundTrips();
+        benchmark();
+    }
+
+    // ---------------- Round trips ----------------
+    private static void roundTrips() {
+        User alice = User.builder().name("Alice").email("alice@test.com").role(Role.MANAGER).build();
+        User bob = User.builder().name("B\u00f8b \u2713").email("bob@test.com").role(Role.DEVELOPER).active(false)
+                .createdAt(Instant.parse("1970-01-01T00:00:00.000000001Z").minusSeconds(86_400)).build();
+
+        Task full = Task.builder()
+                .title("Ship release")
+                .description("Cut the branch, tag, publish")
+                .status(Status.IN_PROGRESS)
+                .priority(Priority.HIGH)
+                .createdBy(alice)
+                .assignedTo(bob)
+                .dueDate(Instant.parse("2030-06-30T12:00:00.123456789Z"))
+                .tags(List.of("release", "backend", "release-notes"))
+                .commentCount(3)
+                .build();
+        Task sparse = Task.builder().title("x").build();
+        Comment comment = Comment.builder().author(alice).message("").build();
+        ActivityEvent event = ActivityEvent.builder()
+                .taskId(full.getId()).activityType(ActivityType.values()[0]).performedBy(bob).build();
+
+        ModelWriter writer = new ModelWriter();
+        writer.writeTask(full).writeTask(sparse).writeUser(alice).writeUser(null)
+                .writeComment(comment).writeActivity(event);
+        ByteBuffer bytes = writer.toByteBuffer();
+
+        ModelReader reader = new ModelReader(bytes.duplicate());
+        Task fullBack = reader.readTask();
+        Task sparseBack = reader.readTask();
+        User aliceBack = reader.readUser();
+        User nullBack = reader.readUser();
+        Comment commentBack = reader.readComment();
+        ActivityEvent eventBack = reader.readActivity();
+
+        // Every field is encoded, so re-encoding what was decoded must give the same bytes
+        ModelWriter again = new ModelWriter();
+        again.writeTask(fullBack).writeTask(sparseBack).writeUser(aliceBack).writeUser(nullBack)
+                .writeComment(commentBack).writeActivity(eventBack);
+
+        check(again.toByteBuffer().equals(bytes), "re-encoded bytes differ");
+        check(fullBack.getDueDate().equals(full.getDueDate()), "dueDate nanos");
+        check(fullBack.getAssignedTo().get().getName().equals("B\u00f8b \u2713"), "unicode name");
+        check(fullBack.getAssignedTo().get().getCreatedAt().equals(bob.getCreatedAt()), "pre-epoch instant");
+        check(!fullBack.getAssignedTo().get().isActive(), "active flag");
+        check(fullBack.getTags().equals(full.getTags()), "tags");
+        check(sparseBack.getDescription() == null && sparseBack.getAssignedTo().isEmpty(), "nulls");
+        check(nullBack == null, "null user");
+        check(commentBack.getMessage().isEmpty(), "empty string");
+        check(eventBack.getTaskId().equals(full.getId()), "activity task id");
+
+        System.out.println("Round trips OK (" + bytes.remaining() + " bytes for 6 models)");
+    }
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            throw new IllegalStateException("Round trip failed: " + what);
+        }
+    }
+
+    // ---------------- Benchmark ----------------
+    private static void benchmark() throws Exception {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            users.add(User.builder().name("User " + i).email("user" + i + "@test.com").role(Role.DEVELOPER).build());
+        }
+        List<Task> tasks = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < TASKS; i++) {
+            tasks.add(Task.builder()
+                    .title("Task " + i)
+                    .description("Description of task " + i)
+                    .priority(Priority.values()[random.nextInt(Priority.values().length)])
+                    .createdBy(users.get(random.nextInt(users.size())))
+                    .assignedTo(users.get(random.nextInt(users.size())))
+                    .dueDate(Instant.now().plusSeconds(random.nextInt(1_000_000)))
+                    .tags(List.of("backend", "team-" + random.nextInt(5)))
+                    .build());
+        }
+
+        for (int round = 0; round < ROUNDS; round++) {
+            boolean last = round == ROUNDS - 1;
+
+            // binary, one stream per record (as in the write-ahead log)
+            long begin = System.nanoTime();
+            long recordBytes = 0;
+            List<byte[]> records = new ArrayList<>(TASKS);
+            for (Task t : tasks) {
+                byte[] record = new ModelWriter().writeTask(t).toByteArray();
+                recordBytes += record.length;
+                records.add(record);
+            }
+            long encode = System.nanoTime() - begin;
+            begin = System.nanoTime();
+            for (byte[] record : records) {
+                new ModelReader(ByteBuffer.wrap(record)).readTask();
+            }
+            long decode = System.nanoTime() - begin;
+            if (last) {
+                report("binary/record", recordBytes, encode, decode);
+            }
+
+            // binary, one stream for all records (as in a snapshot segment)
+            begin = System.nanoTime();
+            ModelWriter writer = new ModelWriter();
+            for (Task t : tasks) {
+                writer.writeTask(t);
+            }
+            ByteBuffer stream = writer.toByteBuffer();
+            encode = System.nanoTime() - begin;
+            begin = System.nanoTime();
+            ModelReader reader = new ModelReader(stream.duplicate());
+            for (int i = 0; i < TASKS; i++) {
+                reader.readTask();
+            }
+            decode = System.nanoTime() - begin;
+            if (last) {
+                report("binary/stream", stream.remaining(), encode, decode);
+            }
+
+            // Java serialization, one stream per record
+            begin = System.nanoTime();
+            long javaBytes = 0;
+            List<byte[]> serialized = new ArrayList<>(TASKS);
+            for (Task t : tasks) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+                    oos.writeObject(fields(t));
+                }
+                javaBytes += out.size();
+                serialized.add(out.toByteArray());
+            }
+            encode = System.nanoTime() - begin;
+            begin = System.nanoTime();
+            for (byte[] record : serialized) {
+                try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(record))) {
+                    ois.readObject();
+                }
+            }
+            decode = System.nanoTime() - begin;
+            if (last) {
+                report("java/record", javaBytes, encode, decode);
+            }
+        }
+    }
+
+    private static Object[] fields(Task t) {
+        return new Object[]{
+                t.getId(), t.getVersion(), t.getTitle(), t.getDescription(), t.getStatus(), t.getPriority(),
+                fields(t.getCreatedBy()), fields(t.getAssignedTo().orElse(null)), t.getDueDate().orElse(null),
+                new ArrayList<>(t.getTags()), t.getCommentCount(), t.getCreatedAt(), t.getUpdatedAt()
+        };
+    }
+
+    private static Object[] fields(User u) {
+        return u == null ? null
+                : new Object[]{u.getId(), u.getName(), u.getEmail(), u.getRole(), u.getCreatedAt(), u.isActive()};
+    }
+
+    private static void report(String name, long bytes, long encodeNanos, long decodeNanos) {
+        System.out.printf("%-14s %6d bytes/task  encode %5d ns/task  decode %5d ns/task%n",
+                name, bytes / TASKS, encodeNanos / TASKS, decodeNanos / TASKS);
+    }
+}
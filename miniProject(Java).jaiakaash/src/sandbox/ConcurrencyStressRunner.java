@@ -0,0 +1,202 @@
+package sandbox;
+
+import enums.Priority;
+import enums.Role;
+import enums.Status;
+import models.Task;
+import models.User;
+import repositories.ActivityEventRepository;
+import repositories.TaskRepository;
+import repositories.UserRepository;
+import repositories.VersionConflictException;
+import services.TaskSearchService;
+import services.TaskService;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Multi-threaded stress run: threads update tasks (priority changes, with an
+// assign / unassign every 50th operation) while a search runs periodically.
+// Prints throughput per thread count to show scaling, then checks the end state:
+// every task's version is 1 + its successful updates, its history is complete, and
+// the status / priority / assignee index counts match a tally of findAllLatest().
+//
+// Modes: "owned"  - each thread updates only its own tasks (no contention)
+//        "shared" - all threads update the same few tasks (version conflicts, retries)
+// Usage: ConcurrencyStressRunner [maxThreads] [owned|shared|both]
+public class ConcurrencyStressRunner {
+
+    private static final int TASKS_PER_THREAD = 200;
+    private static final int SHARED_TASKS = 8;
+    private static final int UPDATES_PER_THREAD = 100_000;
+
+    private static boolean failed;
+
+    public static void main(String[] args) throws InterruptedException {
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(cores, 4);
+        String mode = args.length > 1 ? args[1] : "both";
+        System.out.println("Cores: " + cores);
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            if (!mode.equals("shared")) {
+                run(threads, false);
+            }
+            if (!mode.equals("owned")) {
+                run(threads, true);
+            }
+        }
+
+        if (failed) {
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+
+    private static void run(int threads, boolean shared) throws InterruptedException {
+
+        // ---------------- Repositories & Services ----------------
+        // counts the conflicts TaskService hits, retried or not
+        AtomicLong conflicts = new AtomicLong();
+        TaskRepository taskRepository = new TaskRepository() {
+            @Override
+            public Task save(Task task, Runnable afterLog) {
+                try {
+                    return super.save(task, afterLog);
+                } catch (VersionConflictException e) {
+                    conflicts.incrementAndGet();
+                    throw e;
+                }
+            }
+        };
+        UserRepository userRepository = new UserRepository();
+        TaskService taskService = new TaskService(
+                taskRepository, new ActivityEventRepository(), userRepository);
+        TaskSearchService searchService = new TaskSearchService(taskRepository);
+
+        User actor = User.builder()
+                .name("Stress")
+                .email("stress@test.com")
+                .role(Role.DEVELOPER)
+                .build();
+        userRepository.save(actor);
+
+        // ---------------- Tasks: per thread, or one shared pool ----------------
+        List<Task> tasks = new ArrayList<>();
+        int taskCount = shared ? SHARED_TASKS : threads * TASKS_PER_THREAD;
+        for (int j = 0; j < taskCount; j++) {
+            tasks.add(taskService.createTask("Task " + j, "stress", actor));
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicLong searches = new AtomicLong();
+        AtomicLong gaveUp = new AtomicLong();
+        AtomicIntegerArray successes = new AtomicIntegerArray(taskCount);
+        Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        Priority[] priorities = Priority.values();
+
+        for (int i = 0; i < threads; i++) {
+            int thread = i;
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int n = 0; n < UPDATES_PER_THREAD; n++) {
+                        int index = shared
+                                ? (n + thread) % taskCount
+                                : thread * TASKS_PER_THREAD + n % TASKS_PER_THREAD;
+                        UUID id = tasks.get(index).getId();
+                        try {
+                            if (n % 50 == 0) {
+                                if (n % 100 == 0) {
+                                    taskService.assignTask(id, actor.getId(), actor);
+                                } else {
+                                    taskService.unassignTask(id, actor);
+                                }
+                            } else {
+                                taskService.updatePriority(id, priorities[n % priorities.length], actor);
+                            }
+                            successes.incrementAndGet(index);
+                        } catch (VersionConflictException e) {
+                            gaveUp.incrementAndGet(); // retries exhausted: no version written
+                        }
+                        if (n % 1000 == 0) {
+                            searchService.filterByPriority(Set.of(Priority.CRITICAL));
+                            searches.incrementAndGet();
+                        }
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+
+        long updates = (long) threads * UPDATES_PER_THREAD;
+        System.out.printf("%-6s threads=%d updates=%d conflicts=%d gaveUp=%d searches=%d elapsed=%dms throughput=%.0f updates/s%n",
+                shared ? "shared" : "owned", threads, updates, conflicts.get(), gaveUp.get(), searches.get(),
+                elapsed / 1_000_000, updates * 1_000_000_000.0 / elapsed);
+
+        // ---------------- Checks ----------------
+        for (Throwable e : errors) {
+            fail("worker thread threw " + e);
+        }
+
+        for (int j = 0; j < taskCount; j++) {
+            UUID id = tasks.get(j).getId();
+            int version = taskRepository.findLatestById(id).orElseThrow().getVersion();
+            if (version != 1 + successes.get(j)) {
+                fail("task " + j + " is at version " + version + " after " + successes.get(j) + " updates");
+            }
+            if (taskRepository.findAllVersions(id).size() != version) {
+                fail("task " + j + " history has " + taskRepository.findAllVersions(id).size()
+                        + " versions, expected " + version);
+            }
+        }
+
+        Map<Status, Integer> byStatus = new EnumMap<>(Status.class);
+        Map<Priority, Integer> byPriority = new EnumMap<>(Priority.class);
+        int assigned = 0;
+        for (Task t : taskRepository.findAllLatest()) {
+            byStatus.merge(t.getStatus(), 1, Integer::sum);
+            byPriority.merge(t.getPriority(), 1, Integer::sum);
+            if (t.getAssignedTo().isPresent()) {
+                assigned++;
+            }
+        }
+        for (Status s : Status.values()) {
+            int expected = byStatus.getOrDefault(s, 0);
+            if (taskRepository.countByStatuses(Set.of(s)) != expected
+                    || taskRepository.findLatestByStatuses(Set.of(s)).size() != expected) {
+                fail("status index disagrees for " + s);
+            }
+        }
+        for (Priority p : priorities) {
+            int expected = byPriority.getOrDefault(p, 0);
+            if (taskRepository.countByPriorities(Set.of(p)) != expected
+                    || taskRepository.findLatestByPriorities(Set.of(p)).size() != expected) {
+                fail("priority index disagrees for " + p);
+            }
+        }
+        if (taskRepository.countByAssignee(actor.getId()) != assigned) {
+            fail("assignee index has " + taskRepository.countByAssignee(actor.getId())
+                    + " tasks, latest versions have " + assigned);
+        }
+    }
+
+    private static void fail(String message) {
+        System.out.println("  CHECK FAILED: " + message);
+        failed = true;
+    }
+}
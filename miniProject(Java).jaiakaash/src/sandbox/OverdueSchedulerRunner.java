@@ -0,0 +1,82 @@
+package sandbox;
+
+import services.OverdueScheduler;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Arms a timer wheel with due dates spread over the next three days, re-arms or cancels
+// a share of them, then turns the wheel hour by hour and checks every notification
+// arrived once, on time.
+public class OverdueSchedulerRunner {
+
+    private static final int TASKS = 200_000;
+    private static final Duration HORIZON = Duration.ofDays(3);
+
+    public static void main(String[] args) {
+
+        Instant start = Instant.now();
+        OverdueScheduler scheduler = new OverdueScheduler(Clock.systemUTC(), Duration.ofSeconds(1));
+
+        Map<UUID, Instant> expected = new HashMap<>();
+        AtomicLong late = new AtomicLong();
+        AtomicLong unexpected = new AtomicLong();
+        scheduler.addListener(event -> {
+            Instant due = expected.remove(event.getTaskId());
+            if (due == null || !due.equals(event.getDueDate())) {
+                unexpected.incrementAndGet();
+            } else if (!event.getDetectedAt().isAfter(due)
+                    || event.getDetectedAt().isAfter(due.plus(Duration.ofHours(1)))) {
+                late.incrementAndGet();
+            }
+        });
+
+        Random random = new Random(11);
+        List<UUID> ids = new ArrayList<>(TASKS);
+        List<Instant> dues = new ArrayList<>(TASKS);
+        for (int i = 0; i < TASKS; i++) {
+            ids.add(new UUID(random.nextLong(), random.nextLong()));
+            dues.add(start.plusSeconds(1 + random.nextInt((int) HORIZON.toSeconds())));
+        }
+
+        long begin = System.nanoTime();
+        for (int i = 0; i < TASKS; i++) {
+            scheduler.schedule(ids.get(i), 1, dues.get(i));
+        }
+        // every 4th task gets a new due date, every 10th is completed
+        for (int i = 0; i < TASKS; i += 4) {
+            scheduler.schedule(ids.get(i), 2, dues.get(TASKS - 1 - i));
+        }
+        for (int i = 0; i < TASKS; i += 10) {
+            scheduler.cancel(ids.get(i), 3);
+        }
+        long armNanos = System.nanoTime() - begin;
+
+        for (int i = 0; i < TASKS; i++) {
+            if (i % 10 != 0) {
+                expected.put(ids.get(i), i % 4 == 0 ? dues.get(TASKS - 1 - i) : dues.get(i));
+            }
+        }
+        int armed = scheduler.getPendingCount();
+
+        begin = System.nanoTime();
+        for (Instant now = start; !now.isAfter(start.plus(HORIZON).plusSeconds(1)); now = now.plus(Duration.ofHours(1))) {
+            scheduler.advanceTo(now);
+        }
+        scheduler.advanceTo(start.plus(HORIZON).plusSeconds(2));
+        long turnNanos = System.nanoTime() - begin;
+
+        System.out.printf("armed %d timers (%d ops) in %d ms%n",
+                armed, TASKS + TASKS / 4 + TASKS / 10, armNanos / 1_000_000);
+        System.out.printf("turned %d hours of wheel in %d ms: fired=%d missing=%d late=%d unexpected=%d%n",
+                HORIZON.toHours(), turnNanos / 1_000_000,
+                scheduler.getFiredCount(), expected.size(), late.get(), unexpected.get());
+
+        OverdueScheduler single = new OverdueScheduler();
+        single.addListener(event -> System.out.println("past-due task fires on arming: " + event));
+        single.schedule(UUID.randomUUID(), 1, start.minusSeconds(5));
+    }
+}
@@ -0,0 +1,104 @@
+package sandbox;
+
+import enums.Priority;
+import models.Task;
+import persistence.Checkpointer;
+import persistence.DurabilityMode;
+import persistence.Snapshot;
+import persistence.WriteAheadLog;
+import repositories.TaskRepository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Startup time of a TaskRepository recovered from the full log versus from the latest
+// snapshot plus the log tail written after it. The checkpoint truncates its log, so the
+// same writes also go to a second log that is never checkpointed. A second checkpoint
+// after the tail shows that checkpoints cost the tail, not the whole history.
+public class SnapshotRecoveryRunner {
+
+    private static final int TASKS = 5_000;
+    private static final int VERSIONS_PER_TASK = 20;
+    private static final int TAIL_WRITES = 1_000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+
+        Path dir = Files.createTempDirectory("snapshots");
+        Path file = dir.resolve("tasks.wal");
+        Path fullFile = dir.resolve("full.wal");
+
+        try (WriteAheadLog wal = new WriteAheadLog(file, DurabilityMode.ASYNC);
+             WriteAheadLog fullWal = new WriteAheadLog(fullFile, DurabilityMode.ASYNC);
+             Checkpointer checkpointer = new Checkpointer(wal, dir)) {
+
+            TaskRepository repository = new TaskRepository(wal);
+            TaskRepository fullRepository = new TaskRepository(fullWal);
+            Task[] heads = new Task[TASKS];
+            for (int v = 0; v < VERSIONS_PER_TASK; v++) {
+                for (int i = 0; i < TASKS; i++) {
+                    heads[i] = fullRepository.save(repository.save(next(heads[i], i, v)));
+                }
+            }
+
+            timeCheckpoint(checkpointer);
+            for (int n = 0; n < TAIL_WRITES; n++) {
+                int i = n % TASKS;
+                heads[i] = fullRepository.save(repository.save(next(heads[i], i, VERSIONS_PER_TASK + n)));
+            }
+            timeCheckpoint(checkpointer);
+            for (int n = TAIL_WRITES; n < 2 * TAIL_WRITES; n++) {
+                int i = n % TASKS;
+                heads[i] = fullRepository.save(repository.save(next(heads[i], i, VERSIONS_PER_TASK + n)));
+            }
+            wal.sync();
+            fullWal.sync();
+        }
+        System.out.printf("log size: %d KB full, %d KB after checkpoint%n",
+                Files.size(fullFile) / 1024, Files.size(file) / 1024);
+
+        // best of a few rounds, so JIT warm-up does not favour whichever runs second
+        try (WriteAheadLog wal = new WriteAheadLog(file, DurabilityMode.ASYNC);
+             WriteAheadLog fullWal = new WriteAheadLog(fullFile, DurabilityMode.ASYNC)) {
+            long fullLog = Long.MAX_VALUE;
+            long fromSnapshot = Long.MAX_VALUE;
+            int tasks = 0;
+            int versions = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                long begin = System.nanoTime();
+                TaskRepository repository = new TaskRepository(fullWal);
+                fullLog = Math.min(fullLog, System.nanoTime() - begin);
+
+                begin = System.nanoTime();
+                Snapshot snapshot = Snapshot.loadLatest(dir).orElseThrow();
+                repository = new TaskRepository(wal, snapshot);
+                fromSnapshot = Math.min(fromSnapshot, System.nanoTime() - begin);
+                tasks = repository.countLatest();
+                versions = repository.findAll().size();
+            }
+            System.out.printf("full log replay:       %d ms%n", fullLog / 1_000_000);
+            System.out.printf("snapshot + log tail:   %d ms, %d tasks, %d versions%n",
+                    fromSnapshot / 1_000_000, tasks, versions);
+        }
+    }
+
+    private static void timeCheckpoint(Checkpointer checkpointer) {
+        long begin = System.nanoTime();
+        Snapshot snapshot = checkpointer.checkpoint();
+        System.out.printf("checkpoint at lsn %d: %d ms%n",
+                snapshot.getLsn(), (System.nanoTime() - begin) / 1_000_000);
+    }
+
+    private static Task next(Task head, int i, int n) {
+        if (head == null) {
+            return Task.builder().title("Task " + i).build();
+        }
+        return Task.builder()
+                .id(head.getId())
+                .version(head.getVersion() + 1)
+                .title(head.getTitle())
+                .priority(Priority.values()[n % Priority.values().length])
+                .createdAt(head.getCreatedAt())
+                .build();
+    }
+}
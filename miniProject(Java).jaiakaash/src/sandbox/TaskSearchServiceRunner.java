@@ -29,7 +29,7 @@ public class TaskSearchServiceRunner {
         TaskService taskService =
                 new TaskService(taskRepository, activityRepository, userRepository);
         TaskSearchService searchService =
-                new TaskSearchService(taskRepository);
+                new TaskSearchService(taskRepository, taskService.getTextIndex());
 
         // ---------------- Users ----------------
         User alice = User.builder()
@@ -80,6 +80,8 @@ public class TaskSearchServiceRunner {
         taskService.updateStatus(t2.getId(), Status.COMPLETED, bob);
 
 
+        taskService.addComment(t3.getId(), "Blocked on the security review", alice);
+
         // Add due dates
         taskService.updateDueDate(
                 t1.getId(),
@@ -143,6 +145,14 @@ public class TaskSearchServiceRunner {
                 )
                 .forEach(t -> print(t));
 
+        System.out.println("Plan: " + searchService.explainCombinedFilter(
+                Set.of(Status.IN_PROGRESS),
+                Set.of(Priority.HIGH, Priority.CRITICAL),
+                bob,
+                true,
+                null
+        ));
+
         // 3.9 Sorting
         System.out.println("\n--- Sorted by priority DESC ---");
         searchService.sortTasks(
@@ -152,6 +162,22 @@ public class TaskSearchServiceRunner {
                         false
                 )
                 .forEach(t -> print(t));
+
+        // 3.11 Text Search
+        System.out.println("\n--- Text search: security ---");
+        searchService.search("security", 10)
+                .forEach(t -> print(t));
+
+        System.out.println("\n--- Text search: deploy* ---");
+        searchService.search("deploy*", 10)
+                .forEach(t -> print(t));
+
+        System.out.println("\n--- Combined filter: assigned to Bob, text \"security\" ---");
+        searchService.combinedFilter(null, null, bob, false, null, "security")
+                .forEach(t -> print(t));
+
+        System.out.println("Plan: " + searchService.explainCombinedFilter(
+                null, null, bob, false, null, "security"));
     }
         // Helper user for boilerplates
     // ---------------- Helper ----------------
@@ -3,6 +3,7 @@ package sandbox;
 import enums.*;
 import models.*;
 import repositories.*;
+import services.Page;
 import services.TaskService;
 
 import java.time.Instant;
@@ -80,6 +81,18 @@ public class TaskServiceRunner {
         System.out.println("\nAfter comment:");
         printTask(task);
 
+        taskService.addComment(task.getId(), "Please add pagination", creator);
+        task = taskService.addComment(task.getId(), "Done", assignee);
+
+        System.out.println("\nComments (newest first, 2 per page):");
+        String cursor = null;
+        do {
+            Page<Comment> page = taskService.viewComments(task.getId(), 2, cursor);
+            page.getItems().forEach(c ->
+                    System.out.println(c.getAuthor().getName() + ": " + c.getMessage()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
         // ---------------- 7. Complete Task ----------------
         task = taskService.updateStatus(task.getId(), Status.COMPLETED, assignee);
         System.out.println("\nAfter completion:");
@@ -106,6 +119,11 @@ public class TaskServiceRunner {
                                         + " | " + e.getDetails()
                         )
                 );
+
+        // ---------------- 10. Dashboard Counters ----------------
+        System.out.println("\nAggregates:");
+        System.out.println(taskService.getAggregates().snapshot());
+        System.out.println("Assigned to Bob: " + taskService.getAggregates().countByAssignee(assignee.getId()));
     }
 
     // ---------------- Helper ----------------
@@ -118,6 +136,6 @@ public class TaskServiceRunner {
                 task.getAssignedTo().map(User::getEmail).orElse("Unassigned"));
         System.out.println("Due Date  : " +
                 task.getDueDate().map(Instant::toString).orElse("No deadline"));
-        System.out.println("Comments  : " + task.getComments().size());
+        System.out.println("Comments  : " + task.getCommentCount());
     }
 }
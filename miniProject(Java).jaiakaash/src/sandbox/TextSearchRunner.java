@@ -0,0 +1,81 @@
+package sandbox;
+
+import indexes.TextIndex;
+
+import java.util.*;
+
+// Indexes synthetic task text (word frequencies skewed like natural language) and times
+// top-20 queries of different shapes against it.
+//
+// Usage: TextSearchRunner [tasks]   (default 1,000,000; needs about 1.5 GB of heap)
+public class TextSearchRunner {
+
+    private static final int VOCABULARY = 50_000;
+    private static final int TITLE_WORDS = 5;
+    private static final int DESCRIPTION_WORDS = 15;
+    private static final int COMMENT_EVERY = 4;
+    private static final int RUNS = 200;
+    private static final int LIMIT = 20;
+
+    public static void main(String[] args) {
+
+        int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        Random random = new Random(23);
+        String[] words = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) {
+            words[i] = word(random);
+        }
+
+        TextIndex index = new TextIndex();
+        long begin = System.nanoTime();
+        for (int i = 0; i < tasks; i++) {
+            UUID id = new UUID(random.nextLong(), random.nextLong());
+            index.addTask(id, sentence(words, TITLE_WORDS, random), sentence(words, DESCRIPTION_WORDS, random));
+            if (i % COMMENT_EVERY == 0) {
+                index.addComment(id, sentence(words, DESCRIPTION_WORDS, random));
+            }
+        }
+        long buildNanos = System.nanoTime() - begin;
+        System.out.printf("indexed %d tasks in %d ms%n", index.size(), buildNanos / 1_000_000);
+
+        Map<String, String> queries = new LinkedHashMap<>();
+        queries.put("rare word", words[VOCABULARY / 2]);
+        queries.put("common word", words[0]);
+        queries.put("two common words", words[0] + " " + words[1]);
+        queries.put("rare AND common", words[VOCABULARY / 2] + " " + words[0]);
+        queries.put("prefix (3 letters)", words[3].substring(0, 3) + "*");
+        queries.put("prefix (2 letters)", words[3].substring(0, 2) + "*");
+
+        for (Map.Entry<String, String> q : queries.entrySet()) {
+            int matches = index.estimate(q.getValue());
+            index.search(q.getValue(), LIMIT); // warm up
+            long start = System.nanoTime();
+            int found = 0;
+            for (int r = 0; r < RUNS; r++) {
+                found = index.search(q.getValue(), LIMIT).size();
+            }
+            long micros = (System.nanoTime() - start) / RUNS / 1_000;
+            System.out.printf("%-20s %-16s estimate=%-8d top=%-3d avg %.2f ms%n",
+                    q.getKey(), "\"" + q.getValue() + "\"", matches, found, micros / 1000.0);
+        }
+    }
+
+    // Skewed pick: low indexes are far more frequent than high ones
+    private static String sentence(String[] words, int length, Random random) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            double r = random.nextDouble();
+            sb.append(i == 0 ? "" : " ").append(words[(int) (words.length * r * r * r)]);
+        }
+        return sb.toString();
+    }
+
+    private static String word(Random random) {
+        char[] letters = new char[4 + random.nextInt(6)];
+        for (int i = 0; i < letters.length; i++) {
+            letters[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(letters);
+    }
+}
@@ -3,7 +3,9 @@ import enums.Role;
 import enums.Status;
 import models.Task;
 import models.User;
+import repositories.TaskRepository;
 import repositories.UserRepository;
+import services.Page;
 import services.UserService;
 
 import java.util.*;
@@ -14,8 +16,8 @@ public class UserServiceRunner {
 
         // --- Setup ---
         UserRepository userRepository = new UserRepository();
-        List<Task> tasks = new ArrayList<>(); // no DB
-        UserService userService = new UserService(userRepository, tasks);
+        TaskRepository taskRepository = new TaskRepository();
+        UserService userService = new UserService(userRepository, taskRepository);
 
         // --- 1. Create Users ---
         User u1 = userService.createUser("Alice", "alice@gmail.com", Role.ADMIN);
@@ -32,8 +34,18 @@ public class UserServiceRunner {
 
         // --- 3. List Users ---
         System.out.println("\nList Users (sorted by name):");
-        userService.listUsers("name")
-                .forEach(u -> System.out.println(u.getName()));
+        List<User> byName = userService.listUsers("name");
+        byName.forEach(u -> System.out.println(u.getName()));
+        System.out.println("Total users: " + byName.size());
+
+        // --- 3b. Page Through Users ---
+        System.out.println("\nUsers by email, one per page:");
+        String cursor = null;
+        do {
+            Page<User> page = userService.listUsers("email", 1, cursor);
+            page.getItems().forEach(u -> System.out.println(u.getEmail()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
 
         // --- 4. Update User ---
         User updated = userService.updateUser(u1.getId(), "Alice Updated", Role.MANAGER);
@@ -49,7 +61,7 @@ public class UserServiceRunner {
                 .status(Status.OPEN)
                 .build();
 
-        tasks.add(task);
+        taskRepository.save(task);
 
         // --- 6. Try deleting Bob (should FAIL) ---
         try {
@@ -62,6 +74,7 @@ public class UserServiceRunner {
         // --- 7. Complete task ---
         Task completedTask = Task.builder()
                 .id(task.getId())
+                .version(task.getVersion() + 1)
                 .title(task.getTitle())
                 .description(task.getDescription())
                 .createdBy(task.getCreatedBy())
@@ -69,8 +82,7 @@ public class UserServiceRunner {
                 .status(Status.COMPLETED)
                 .build();
 
-        tasks.clear();
-        tasks.add(completedTask);
+        taskRepository.save(completedTask);
 
         // --- 8. Delete Bob again (should PASS) ---
         User deleted = userService.deleteUser(u2.getId());
@@ -0,0 +1,94 @@
+package sandbox;
+
+import enums.Priority;
+import models.Task;
+import persistence.DurabilityMode;
+import persistence.WriteAheadLog;
+import repositories.TaskRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+// Writes/sec and p99 save latency of a WAL-backed TaskRepository per durability mode,
+// followed by a recovery check that reopens the log.
+public class WalBenchmarkRunner {
+
+    private static final int THREADS = 8;
+    private static final int TASKS_PER_THREAD = 50;
+    private static final int WRITES_PER_THREAD = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        for (DurabilityMode mode : DurabilityMode.values()) {
+            run(mode);
+        }
+    }
+
+    private static void run(DurabilityMode mode) throws IOException, InterruptedException {
+
+        Path file = Files.createTempFile("tasks-" + mode, ".wal");
+
+        long[] latencies = new long[THREADS * WRITES_PER_THREAD];
+        long elapsed;
+
+        try (WriteAheadLog wal = new WriteAheadLog(file, mode)) {
+            TaskRepository repository = new TaskRepository(wal);
+
+            CountDownLatch start = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(THREADS);
+
+            for (int i = 0; i < THREADS; i++) {
+                int thread = i;
+                new Thread(() -> {
+                    try {
+                        start.await();
+                        Task[] heads = new Task[TASKS_PER_THREAD];
+                        for (int n = 0; n < WRITES_PER_THREAD; n++) {
+                            int slot = n % TASKS_PER_THREAD;
+                            Task head = heads[slot];
+                            Task next = head == null
+                                    ? Task.builder().title("Task " + thread + "-" + slot).build()
+                                    : Task.builder()
+                                            .id(head.getId())
+                                            .version(head.getVersion() + 1)
+                                            .title(head.getTitle())
+                                            .priority(Priority.values()[n % Priority.values().length])
+                                            .createdAt(head.getCreatedAt())
+                                            .build();
+
+                            long begin = System.nanoTime();
+                            heads[slot] = repository.save(next);
+                            latencies[thread * WRITES_PER_THREAD + n] = System.nanoTime() - begin;
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }).start();
+            }
+
+            long begin = System.nanoTime();
+            start.countDown();
+            done.await();
+            elapsed = System.nanoTime() - begin;
+        }
+
+        Arrays.sort(latencies);
+        long p99 = latencies[(int) (latencies.length * 0.99) - 1];
+
+        // ---------------- Recovery ----------------
+        int recovered;
+        try (WriteAheadLog wal = new WriteAheadLog(file, mode)) {
+            recovered = new TaskRepository(wal).findAll().size();
+        }
+
+        System.out.printf("%-12s writes=%d throughput=%.0f writes/s p99=%dus log=%dKB recovered=%d%n",
+                mode, latencies.length, latencies.length * 1_000_000_000.0 / elapsed,
+                p99 / 1_000, Files.size(file) / 1024, recovered);
+
+        Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,277 @@
+package services;
+
+import models.ActivityEvent;
+import repositories.ActivityStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Records activity events either synchronously, or through a bounded queue that a
+// background consumer drains in batches into the ActivityStore.
+public class ActivityRecorder implements AutoCloseable {
+
+    // What record() does when the async queue is full
+    public enum OverflowPolicy {
+        BLOCK, // wait for space (backpressure onto the writer)
+        SHED   // drop the event and count it
+    }
+
+    // Queue entry: an event, a flush() marker released once everything queued ahead
+    // of it has been saved, or STOP, queued last by close()
+    private static final class Entry {
+        final ActivityEvent event;
+        final CountDownLatch flushed;
+
+        Entry(ActivityEvent event, CountDownLatch flushed) {
+            this.event = event;
+            this.flushed = flushed;
+        }
+    }
+
+    private static final Entry STOP = new Entry(null, null);
+
+    private final ActivityStore repository;
+    private final BlockingQueue<Entry> queue; // null in synchronous mode
+    private final int batchSize;
+    private final OverflowPolicy overflowPolicy;
+    private final Thread consumer;
+
+    // ---- Metrics ----
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong shed = new AtomicLong();
+    private final AtomicLong blockedNanos = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong persisted = new AtomicLong();
+
+    // record() and flush() enqueue under the read side; close() takes the write side to
+    // stop accepting, so nothing can be queued behind STOP
+    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+    private boolean running = true; // guarded by stateLock
+    private volatile RuntimeException failure; // first failed batch save, rethrown by flush()
+
+    private ActivityRecorder(ActivityStore repository,
+                             int capacity,
+                             int batchSize,
+                             OverflowPolicy overflowPolicy) {
+        this.repository = repository;
+        this.batchSize = batchSize;
+        this.overflowPolicy = overflowPolicy;
+
+        if (capacity == 0) {
+            this.queue = null;
+            this.consumer = null;
+        } else {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.consumer = new Thread(this::drainLoop, "activity-recorder");
+            this.consumer.setDaemon(true);
+            this.consumer.start();
+        }
+    }
+
+    // Saves each event on the caller's thread
+    public static ActivityRecorder synchronous(ActivityStore repository) {
+        return new ActivityRecorder(repository, 0, 1, OverflowPolicy.BLOCK);
+    }
+
+    public static ActivityRecorder async(ActivityStore repository,
+                                         int capacity,
+                                         int batchSize,
+                                         OverflowPolicy overflowPolicy) {
+        if (capacity < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("capacity and batchSize must be positive");
+        }
+        return new ActivityRecorder(repository, capacity, batchSize, overflowPolicy);
+    }
+
+    // Returns false if the event was shed
+    public boolean record(ActivityEvent event) {
+
+        if (queue == null) {
+            repository.save(event);
+            accepted.incrementAndGet();
+            persisted.incrementAndGet();
+            return true;
+        }
+
+        stateLock.readLock().lock();
+        try {
+            if (!running) {
+                throw new IllegalStateException("Activity recorder is closed");
+            }
+
+            Entry entry = new Entry(event, null);
+            if (!queue.offer(entry)) {
+                if (overflowPolicy == OverflowPolicy.SHED) {
+                    shed.incrementAndGet();
+                    return false;
+                }
+                long start = System.nanoTime();
+                try {
+                    queue.put(entry); // the consumer keeps draining, so close() is not stuck behind this
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while recording activity", e);
+                } finally {
+                    blockedNanos.addAndGet(System.nanoTime() - start);
+                }
+            }
+
+            accepted.incrementAndGet();
+            return true;
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    // Barrier: returns once every event accepted before this call is in the repository.
+    // Queues a marker behind those events and waits for the consumer to reach it (or,
+    // once closed, for the consumer to finish). Throws if a batch could not be saved.
+    public void flush() {
+        if (queue != null) {
+            try {
+                CountDownLatch flushed = new CountDownLatch(1);
+                boolean queued;
+                stateLock.readLock().lock();
+                try {
+                    queued = running;
+                    if (queued) {
+                        queue.put(new Entry(null, flushed));
+                    }
+                } finally {
+                    stateLock.readLock().unlock();
+                }
+                if (queued) {
+                    flushed.await();
+                } else {
+                    consumer.join();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while flushing activity", e);
+            }
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Activity events could not be saved", failure);
+        }
+    }
+
+    // Stops accepting events, then waits for the consumer to save everything accepted.
+    // Throws if any batch could not be saved.
+    @Override
+    public void close() {
+        if (queue == null) {
+            return;
+        }
+        stateLock.writeLock().lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+
+        // STOP rather than an interrupt, which could close a channel the repository is writing
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(STOP);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        while (consumer.isAlive()) {
+            try {
+                consumer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Activity events could not be saved", failure);
+        }
+    }
+
+    // Runs until it takes STOP, the last entry ever queued. A failed save is recorded
+    // rather than thrown, so the consumer keeps draining and flush() callers are released.
+    private void drainLoop() {
+        List<Entry> drained = new ArrayList<>(batchSize);
+        List<ActivityEvent> batch = new ArrayList<>(batchSize);
+        boolean stopped = false;
+        while (!stopped) {
+            try {
+                drained.add(queue.take());
+            } catch (InterruptedException e) {
+                continue; // only close() stops the consumer
+            }
+            queue.drainTo(drained, batchSize - 1);
+
+            for (Entry entry : drained) {
+                if (entry == STOP) {
+                    stopped = true;
+                } else if (entry.event != null) {
+                    batch.add(entry.event);
+                }
+            }
+            if (!batch.isEmpty()) {
+                try {
+                    repository.saveAll(batch);
+                    batches.incrementAndGet();
+                    persisted.addAndGet(batch.size());
+                } catch (RuntimeException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            for (Entry entry : drained) {
+                if (entry.flushed != null) {
+                    entry.flushed.countDown();
+                }
+            }
+            drained.clear();
+            batch.clear();
+        }
+    }
+
+    // ---------- Metrics ----------
+    public int getQueueDepth() {
+        return queue == null ? 0 : queue.size();
+    }
+
+    public int getQueueCapacity() {
+        return queue == null ? 0 : queue.size() + queue.remainingCapacity();
+    }
+
+    public long getAcceptedCount() {
+        return accepted.get();
+    }
+
+    public long getPersistedCount() {
+        return persisted.get();
+    }
+
+    public long getShedCount() {
+        return shed.get();
+    }
+
+    // Total time writers spent blocked on a full queue (BLOCK policy)
+    public long getBlockedNanos() {
+        return blockedNanos.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+}
@@ -0,0 +1,75 @@
+package services;
+
+import enums.Priority;
+import enums.Status;
+
+import java.time.Instant;
+import java.util.*;
+
+// Point-in-time copy of TaskAggregates: every count was taken at the same instant
+public final class AggregateSnapshot {
+
+    private final Instant takenAt;
+    private final long total;
+    private final Map<Status, Long> byStatus;
+    private final Map<Priority, Long> byPriority;
+    private final Map<UUID, Long> byAssignee;
+    private final long overdue;
+    private final Map<UUID, Long> overdueByAssignee;
+
+    AggregateSnapshot(Instant takenAt,
+                      long total,
+                      Map<Status, Long> byStatus,
+                      Map<Priority, Long> byPriority,
+                      Map<UUID, Long> byAssignee,
+                      long overdue,
+                      Map<UUID, Long> overdueByAssignee) {
+        this.takenAt = takenAt;
+        this.total = total;
+        this.byStatus = Collections.unmodifiableMap(new EnumMap<>(byStatus));
+        this.byPriority = Collections.unmodifiableMap(new EnumMap<>(byPriority));
+        this.byAssignee = Map.copyOf(byAssignee);
+        this.overdue = overdue;
+        this.overdueByAssignee = Map.copyOf(overdueByAssignee);
+    }
+
+    // ---------- Getters ----------
+    public Instant getTakenAt() {
+        return takenAt;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public Map<Status, Long> getByStatus() {
+        return byStatus;
+    }
+
+    public Map<Priority, Long> getByPriority() {
+        return byPriority;
+    }
+
+    // Tasks currently assigned to each user, in any status
+    public Map<UUID, Long> getByAssignee() {
+        return byAssignee;
+    }
+
+    public long getOverdue() {
+        return overdue;
+    }
+
+    public Map<UUID, Long> getOverdueByAssignee() {
+        return overdueByAssignee;
+    }
+
+    @Override
+    public String toString() {
+        return "takenAt=" + takenAt
+                + " total=" + total
+                + " byStatus=" + byStatus
+                + " byPriority=" + byPriority
+                + " assignees=" + byAssignee.size()
+                + " overdue=" + overdue;
+    }
+}
@@ -0,0 +1,44 @@
+package services;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// Emitted once when an active task passes its due date
+public final class OverdueEvent {
+
+    private final UUID taskId;
+    private final int version;
+    private final Instant dueDate;
+    private final Instant detectedAt;
+
+    OverdueEvent(UUID taskId, int version, Instant dueDate, Instant detectedAt) {
+        this.taskId = taskId;
+        this.version = version;
+        this.dueDate = dueDate;
+        this.detectedAt = detectedAt;
+    }
+
+    // ---------- Getters ----------
+    public UUID getTaskId() {
+        return taskId;
+    }
+
+    // Task version that armed the timer
+    public int getVersion() {
+        return version;
+    }
+
+    public Instant getDueDate() {
+        return dueDate;
+    }
+
+    // At most one scheduler tick after the due date
+    public Instant getDetectedAt() {
+        return detectedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "task=" + taskId + " v" + version + " due=" + dueDate + " detected=" + detectedAt;
+    }
+}
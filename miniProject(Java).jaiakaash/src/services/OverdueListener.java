@@ -0,0 +1,8 @@
+package services;
+
+// Receives OverdueScheduler notifications, on the thread that advanced the scheduler
+@FunctionalInterface
+public interface OverdueListener {
+
+    void onOverdue(OverdueEvent event);
+}
@@ -0,0 +1,350 @@
+package services;
+
+import enums.Status;
+import models.Task;
+import repositories.TaskRepository;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Hierarchical timer wheel of task due dates that tells listeners when a task becomes
+// overdue, instead of scanning for overdue tasks.
+//
+// Time is counted in ticks (one second by default). Level l has 64 slots, each spanning
+// 64^l ticks, and a timer sits in the lowest level whose range covers its distance from
+// now, in the slot given by its deadline's bits at that level. As the wheel turns, each
+// slot of a higher level is cascaded into the levels below when its span begins, so a
+// timer is touched about once per level. Six levels cover 64^6 ticks; longer deadlines
+// are parked in the top level and re-placed whenever it cascades them. Due dates
+// beyond the range of epoch milliseconds are never armed.
+// Arming, re-arming and cancelling a task are O(1). Turning skips straight to the next
+// tick at which a non-empty slot is expired or cascaded, so an idle gap costs nothing.
+//
+// The wheel moves when advance() is called, either by the ticker started with start()
+// or by readers such as TaskAggregates. Listeners run on the advancing thread, after
+// the wheel's lock is released; a listener that throws is counted and skipped.
+public class OverdueScheduler implements AutoCloseable {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 6;
+
+    // Deadline of a due date too far ahead to ever be reached; such timers are not armed
+    private static final long NEVER = Long.MAX_VALUE;
+
+    // A pending timer, linked into its slot
+    private static final class Timer {
+        final UUID taskId;
+        final int version;
+        final Instant dueDate;
+        final long deadline; // first tick at which the task is overdue
+
+        Timer prev;
+        Timer next;
+        Timer[] bucket;      // slot array holding this timer
+        int slot;
+
+        Timer(UUID taskId, int version, Instant dueDate, long deadline) {
+            this.taskId = taskId;
+            this.version = version;
+            this.dueDate = dueDate;
+            this.deadline = deadline;
+        }
+    }
+
+    private final Clock clock;
+    private final long tickMillis;
+
+    private final Object lock = new Object();
+    private final Timer[][] wheel = new Timer[LEVELS][SLOTS]; // slot heads; guarded by lock
+    private final Map<UUID, Timer> timers = new HashMap<>();   // guarded by lock: pending timers
+    private long currentTick;                                  // guarded by lock
+
+    private final List<OverdueListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong firedCount = new AtomicLong();
+    private final AtomicLong listenerFailures = new AtomicLong();
+
+    private ScheduledExecutorService ticker;
+
+    public OverdueScheduler() {
+        this(Clock.systemUTC(), Duration.ofSeconds(1));
+    }
+
+    public OverdueScheduler(Clock clock, Duration tick) {
+        if (tick.toMillis() < 1) {
+            throw new IllegalArgumentException("tick must be at least 1ms");
+        }
+        this.clock = clock;
+        this.tickMillis = tick.toMillis();
+        this.currentTick = Math.floorDiv(clock.millis(), tickMillis);
+    }
+
+    // A scheduler armed for every active task in the repository that has a due date
+    public static OverdueScheduler from(TaskRepository taskRepository) {
+        OverdueScheduler scheduler = new OverdueScheduler();
+        for (Task task : taskRepository.findAllLatest()) {
+            scheduler.track(task);
+        }
+        return scheduler;
+    }
+
+    public void addListener(OverdueListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(OverdueListener listener) {
+        listeners.remove(listener);
+    }
+
+    // ---------------- Arming ----------------
+    // Arms (or re-arms) the task's timer when it is active with a due date, otherwise
+    // cancels it. Versions older than the task's pending timer are ignored; once a timer
+    // has fired or been cancelled nothing is kept for the task, so listeners check the
+    // event's version against the task (as TaskAggregates does).
+    public void track(Task task) {
+        boolean active = task.getStatus() == Status.OPEN || task.getStatus() == Status.IN_PROGRESS;
+        Instant dueDate = task.getDueDate().orElse(null);
+        if (active && dueDate != null) {
+            schedule(task.getId(), task.getVersion(), dueDate);
+        } else {
+            cancel(task.getId(), task.getVersion());
+        }
+    }
+
+    public void schedule(UUID taskId, int version, Instant dueDate) {
+        OverdueEvent expired = null;
+        synchronized (lock) {
+            if (isStale(taskId, version)) {
+                return;
+            }
+            unlink(timers.remove(taskId));
+            Timer timer = new Timer(taskId, version, dueDate, deadlineOf(dueDate));
+            if (timer.deadline == NEVER) {
+                return;
+            }
+            if (timer.deadline <= currentTick) {
+                expired = new OverdueEvent(taskId, version, dueDate, clock.instant());
+            } else {
+                timers.put(taskId, timer);
+                place(timer);
+            }
+        }
+        if (expired != null) {
+            fire(List.of(expired));
+        }
+    }
+
+    public void cancel(UUID taskId, int version) {
+        synchronized (lock) {
+            if (!isStale(taskId, version)) {
+                unlink(timers.remove(taskId));
+            }
+        }
+    }
+
+    // ---------------- Turning ----------------
+    // Moves the wheel up to the clock's current time
+    public void advance() {
+        advanceTo(clock.instant());
+    }
+
+    public void advanceTo(Instant now) {
+        long target = tickOf(now);
+        List<OverdueEvent> fired = new ArrayList<>();
+        synchronized (lock) {
+            while (currentTick < target) {
+                long next = nextBusyTick();
+                if (next > target) {
+                    currentTick = target;
+                    break;
+                }
+                currentTick = next;
+                cascade(1);
+                expire(fired, now);
+            }
+        }
+        fire(fired);
+    }
+
+    // Turns the wheel every tick on a daemon thread
+    public synchronized void start() {
+        if (ticker != null) {
+            throw new IllegalStateException("Scheduler is already started");
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "overdue-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (ticker != null) {
+            ticker.shutdown();
+        }
+    }
+
+    // ---------------- Metrics ----------------
+    public int getPendingCount() {
+        synchronized (lock) {
+            return timers.size();
+        }
+    }
+
+    public long getFiredCount() {
+        return firedCount.get();
+    }
+
+    public long getListenerFailures() {
+        return listenerFailures.get();
+    }
+
+    // ---------------- Internals ----------------
+    // Tick containing the instant, clamped for instants beyond the millisecond range
+    private long tickOf(Instant instant) {
+        try {
+            return Math.floorDiv(instant.toEpochMilli(), tickMillis);
+        } catch (ArithmeticException e) {
+            return instant.isBefore(Instant.EPOCH) ? Long.MIN_VALUE : NEVER;
+        }
+    }
+
+    // First tick at which a task due at dueDate is overdue, or NEVER
+    private long deadlineOf(Instant dueDate) {
+        long tick = tickOf(dueDate);
+        return tick == NEVER ? NEVER : tick + 1;
+    }
+
+    // Caller holds lock. True when the task's pending timer is for a newer version.
+    private boolean isStale(UUID taskId, int version) {
+        Timer pending = timers.get(taskId);
+        return pending != null && pending.version > version;
+    }
+
+    // Caller holds lock. The first tick after currentTick at which a non-empty slot is
+    // expired (level 0) or cascaded (higher levels), or NEVER when the wheel is empty.
+    // Every slot of a level comes round within SLOTS of its spans, so each level is
+    // checked over its next SLOTS spans.
+    private long nextBusyTick() {
+        long next = NEVER;
+        if (timers.isEmpty()) {
+            return next;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = SLOT_BITS * level;
+            long span = currentTick >>> shift;
+            for (int j = 1; j <= SLOTS; j++) {
+                long tick = (span + j) << shift;
+                if (tick >= next) {
+                    break;
+                }
+                if (wheel[level][(int) ((span + j) & (SLOTS - 1))] != null) {
+                    next = tick;
+                    break;
+                }
+            }
+        }
+        return next;
+    }
+
+    // Caller holds lock
+    private void place(Timer timer) {
+        long delta = timer.deadline - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int slot = (int) ((timer.deadline >>> (SLOT_BITS * level)) & (SLOTS - 1));
+        link(wheel[level], slot, timer);
+    }
+
+    // Caller holds lock. When the lower levels have just wrapped, re-places the timers of
+    // this level's current slot (and recursively the levels above).
+    private void cascade(int level) {
+        if (level >= LEVELS || (currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+            return;
+        }
+        cascade(level + 1);
+        int slot = (int) ((currentTick >>> (SLOT_BITS * level)) & (SLOTS - 1));
+        Timer timer = wheel[level][slot];
+        wheel[level][slot] = null;
+        while (timer != null) {
+            Timer next = timer.next;
+            timer.prev = null;
+            timer.next = null;
+            timer.bucket = null;
+            place(timer);
+            timer = next;
+        }
+    }
+
+    // Caller holds lock. Pops the level-0 slot of the current tick.
+    private void expire(List<OverdueEvent> fired, Instant now) {
+        int slot = (int) (currentTick & (SLOTS - 1));
+        Timer timer = wheel[0][slot];
+        wheel[0][slot] = null;
+        while (timer != null) {
+            Timer next = timer.next;
+            timer.prev = null;
+            timer.next = null;
+            timer.bucket = null;
+            if (timer.deadline <= currentTick) {
+                timers.remove(timer.taskId);
+                fired.add(new OverdueEvent(timer.taskId, timer.version, timer.dueDate, now));
+            } else {
+                place(timer); // not due on this turn of the wheel
+            }
+            timer = next;
+        }
+    }
+
+    private static void link(Timer[] bucket, int slot, Timer timer) {
+        timer.bucket = bucket;
+        timer.slot = slot;
+        timer.prev = null;
+        timer.next = bucket[slot];
+        if (timer.next != null) {
+            timer.next.prev = timer;
+        }
+        bucket[slot] = timer;
+    }
+
+    private static void unlink(Timer timer) {
+        if (timer == null || timer.bucket == null) {
+            return;
+        }
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else {
+            timer.bucket[timer.slot] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.prev = timer.prev;
+        }
+        timer.prev = null;
+        timer.next = null;
+        timer.bucket = null;
+    }
+
+    private void fire(List<OverdueEvent> events) {
+        for (OverdueEvent event : events) {
+            firedCount.incrementAndGet();
+            for (OverdueListener listener : listeners) {
+                try {
+                    listener.onOverdue(event);
+                } catch (RuntimeException e) {
+                    listenerFailures.incrementAndGet();
+                }
+            }
+        }
+    }
+}
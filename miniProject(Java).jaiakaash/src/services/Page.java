@@ -0,0 +1,27 @@
+package services;
+
+import java.util.List;
+
+// One page of a keyset-paginated read; nextCursor is null on the last page
+public final class Page<T> {
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    Page(List<T> items, String nextCursor) {
+        this.items = List.copyOf(items);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,58 @@
+package services;
+
+import java.util.*;
+
+// Explain output for TaskSearchService.combinedFilter
+public final class QueryPlan {
+
+    private final String driver;
+    private final Map<String, Integer> estimates;
+    private final List<String> residuals;
+    private final int scanned;
+    private final int returned;
+
+    QueryPlan(String driver,
+              Map<String, Integer> estimates,
+              List<String> residuals,
+              int scanned,
+              int returned) {
+        this.driver = driver;
+        this.estimates = Collections.unmodifiableMap(new LinkedHashMap<>(estimates));
+        this.residuals = List.copyOf(residuals);
+        this.scanned = scanned;
+        this.returned = returned;
+    }
+
+    // ---------- Getters ----------
+    // Clause whose index produced the candidate set ("scan" when nothing was selective)
+    public String getDriver() {
+        return driver;
+    }
+
+    // Estimated candidate rows per clause, as seen by the planner
+    public Map<String, Integer> getEstimates() {
+        return estimates;
+    }
+
+    // Clauses applied as filters on the driver's candidates
+    public List<String> getResiduals() {
+        return residuals;
+    }
+
+    public int getScanned() {
+        return scanned;
+    }
+
+    public int getReturned() {
+        return returned;
+    }
+
+    @Override
+    public String toString() {
+        return "driver=" + driver
+                + " estimates=" + estimates
+                + " residuals=" + residuals
+                + " scanned=" + scanned
+                + " returned=" + returned;
+    }
+}
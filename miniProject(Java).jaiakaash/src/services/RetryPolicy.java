@@ -0,0 +1,41 @@
+package services;
+
+// Bounded retry for server-side version conflicts in TaskService
+public final class RetryPolicy {
+
+    private final int maxAttempts;
+    private final long backoffMillis;
+
+    private RetryPolicy(int maxAttempts, long backoffMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        if (backoffMillis < 0) {
+            throw new IllegalArgumentException("backoffMillis must not be negative");
+        }
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+    }
+
+    public static RetryPolicy of(int maxAttempts, long backoffMillis) {
+        return new RetryPolicy(maxAttempts, backoffMillis);
+    }
+
+    // Fail on the first conflict
+    public static RetryPolicy none() {
+        return new RetryPolicy(1, 0);
+    }
+
+    public static RetryPolicy defaultPolicy() {
+        return new RetryPolicy(5, 0);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    // Pause before attempt n (n >= 2) grows linearly: (n - 1) * backoffMillis
+    public long getBackoffMillis() {
+        return backoffMillis;
+    }
+}
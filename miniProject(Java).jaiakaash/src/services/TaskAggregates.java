@@ -0,0 +1,275 @@
+package services;
+
+import enums.Priority;
+import enums.Status;
+import models.Task;
+import models.User;
+import repositories.TaskRepository;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Live dashboard counters over the latest version of every task: by status, by
+// priority, by assignee, and overdue (in total and per assignee). TaskService feeds
+// each newly saved version to onSaved; counts are then O(1) reads.
+//
+// Thread-safe. Each task's tracked state is updated inside its map entry's compute, so
+// versions of one task apply in version order (a stale version arriving late is
+// ignored). Writers hold the read side of `snapshotLock` while moving counters, and
+// snapshot() takes the write side, so a snapshot never sees half of a transition.
+//
+// A task is overdue when it is OPEN or IN_PROGRESS and its due date has passed. A version
+// saved already past due counts at once; otherwise the task is counted when an
+// OverdueScheduler reports it (onOverdue). Overdue reads first advance that scheduler.
+public class TaskAggregates implements OverdueListener {
+
+    // What the counters currently hold for one task
+    private static final class Tracked {
+        final int version;
+        final Status status;
+        final Priority priority;
+        final UUID assigneeId;
+        final Instant dueDate;
+        final boolean overdue;
+
+        Tracked(int version, Status status, Priority priority, UUID assigneeId, Instant dueDate, boolean overdue) {
+            this.version = version;
+            this.status = status;
+            this.priority = priority;
+            this.assigneeId = assigneeId;
+            this.dueDate = dueDate;
+            this.overdue = overdue;
+        }
+
+        Tracked withOverdue() {
+            return new Tracked(version, status, priority, assigneeId, dueDate, true);
+        }
+    }
+
+    private final Clock clock;
+    private final OverdueScheduler scheduler; // may be null
+
+    private final Map<UUID, Tracked> tracked = new ConcurrentHashMap<>();
+
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLongArray byStatus = new AtomicLongArray(Status.values().length);
+    private final AtomicLongArray byPriority = new AtomicLongArray(Priority.values().length);
+    private final Map<UUID, AtomicLong> byAssignee = new ConcurrentHashMap<>();
+    private final AtomicLong overdue = new AtomicLong();
+    private final Map<UUID, AtomicLong> overdueByAssignee = new ConcurrentHashMap<>();
+
+    // Without a scheduler, tasks only count as overdue when saved past their due date
+    public TaskAggregates() {
+        this(Clock.systemUTC(), null);
+    }
+
+    public TaskAggregates(Clock clock, OverdueScheduler scheduler) {
+        this.clock = clock;
+        this.scheduler = scheduler;
+    }
+
+    // Aggregates over the repository's current latest versions, listening to scheduler
+    public static TaskAggregates from(TaskRepository taskRepository, OverdueScheduler scheduler) {
+        TaskAggregates aggregates = new TaskAggregates(Clock.systemUTC(), scheduler);
+        aggregates.rebuild(taskRepository);
+        scheduler.addListener(aggregates);
+        return aggregates;
+    }
+
+    // ---------------- Updates ----------------
+    // Applies a newly saved task version
+    public void onSaved(Task task) {
+        tracked.compute(task.getId(), (id, before) -> {
+            if (before != null && before.version >= task.getVersion()) {
+                return before;
+            }
+            Tracked after = track(task);
+            move(before, after);
+            return after;
+        });
+    }
+
+    // Counts a task reported overdue, if its current version is still active and past due
+    @Override
+    public void onOverdue(OverdueEvent event) {
+        markOverdue(event.getTaskId(), event.getDetectedAt());
+    }
+
+    // Recounts from scratch; concurrent onSaved calls should be quiesced meanwhile
+    public void rebuild(TaskRepository taskRepository) {
+        snapshotLock.writeLock().lock();
+        try {
+            tracked.clear();
+            total.set(0);
+            for (int i = 0; i < byStatus.length(); i++) {
+                byStatus.set(i, 0);
+            }
+            for (int i = 0; i < byPriority.length(); i++) {
+                byPriority.set(i, 0);
+            }
+            byAssignee.clear();
+            overdue.set(0);
+            overdueByAssignee.clear();
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+        for (Task task : taskRepository.findAllLatest()) {
+            onSaved(task);
+        }
+    }
+
+    // ---------------- Reads ----------------
+    public long countTotal() {
+        return total.get();
+    }
+
+    public long countByStatus(Status status) {
+        return byStatus.get(status.ordinal());
+    }
+
+    public long countByPriority(Priority priority) {
+        return byPriority.get(priority.ordinal());
+    }
+
+    public long countByAssignee(UUID userId) {
+        AtomicLong count = byAssignee.get(userId);
+        return count == null ? 0 : count.get();
+    }
+
+    public long countOverdue() {
+        advance();
+        return overdue.get();
+    }
+
+    public long countOverdueByAssignee(UUID userId) {
+        advance();
+        AtomicLong count = overdueByAssignee.get(userId);
+        return count == null ? 0 : count.get();
+    }
+
+    public Map<Status, Long> statusHistogram() {
+        Map<Status, Long> histogram = new EnumMap<>(Status.class);
+        for (Status s : Status.values()) {
+            histogram.put(s, byStatus.get(s.ordinal()));
+        }
+        return histogram;
+    }
+
+    public Map<Priority, Long> priorityHistogram() {
+        Map<Priority, Long> histogram = new EnumMap<>(Priority.class);
+        for (Priority p : Priority.values()) {
+            histogram.put(p, byPriority.get(p.ordinal()));
+        }
+        return histogram;
+    }
+
+    // All counters as of one instant
+    public AggregateSnapshot snapshot() {
+        advance();
+        snapshotLock.writeLock().lock();
+        try {
+            return new AggregateSnapshot(
+                    clock.instant(),
+                    total.get(),
+                    statusHistogram(),
+                    priorityHistogram(),
+                    nonZero(byAssignee),
+                    overdue.get(),
+                    nonZero(overdueByAssignee));
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    // ---------------- Internals ----------------
+    private Tracked track(Task task) {
+        UUID assigneeId = task.getAssignedTo().map(User::getId).orElse(null);
+        Instant dueDate = task.getDueDate().orElse(null);
+        boolean isOverdue = isActive(task.getStatus())
+                && dueDate != null
+                && dueDate.isBefore(clock.instant());
+        return new Tracked(task.getVersion(), task.getStatus(), task.getPriority(), assigneeId, dueDate, isOverdue);
+    }
+
+    // Moves the counters from `before` (null for a new task) to `after`
+    private void move(Tracked before, Tracked after) {
+        snapshotLock.readLock().lock();
+        try {
+            if (before == null) {
+                total.incrementAndGet();
+            } else {
+                byStatus.decrementAndGet(before.status.ordinal());
+                byPriority.decrementAndGet(before.priority.ordinal());
+                add(byAssignee, before.assigneeId, -1);
+                if (before.overdue) {
+                    overdue.decrementAndGet();
+                    add(overdueByAssignee, before.assigneeId, -1);
+                }
+            }
+            byStatus.incrementAndGet(after.status.ordinal());
+            byPriority.incrementAndGet(after.priority.ordinal());
+            add(byAssignee, after.assigneeId, 1);
+            if (after.overdue) {
+                overdue.incrementAndGet();
+                add(overdueByAssignee, after.assigneeId, 1);
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    // Lets the scheduler deliver any overdue events that are due by now
+    private void advance() {
+        if (scheduler != null) {
+            scheduler.advance();
+        }
+    }
+
+    private void markOverdue(UUID id, Instant now) {
+        tracked.computeIfPresent(id, (taskId, current) -> {
+            if (current.overdue
+                    || !isActive(current.status)
+                    || current.dueDate == null
+                    || !current.dueDate.isBefore(now)) {
+                return current;
+            }
+            Tracked after = current.withOverdue();
+            snapshotLock.readLock().lock();
+            try {
+                overdue.incrementAndGet();
+                add(overdueByAssignee, current.assigneeId, 1);
+            } finally {
+                snapshotLock.readLock().unlock();
+            }
+            return after;
+        });
+    }
+
+    private static boolean isActive(Status status) {
+        return status == Status.OPEN || status == Status.IN_PROGRESS;
+    }
+
+    private static void add(Map<UUID, AtomicLong> counters, UUID key, long delta) {
+        if (key != null) {
+            counters.computeIfAbsent(key, k -> new AtomicLong()).addAndGet(delta);
+        }
+    }
+
+    private static Map<UUID, Long> nonZero(Map<UUID, AtomicLong> counters) {
+        Map<UUID, Long> copy = new HashMap<>();
+        counters.forEach((key, count) -> {
+            long value = count.get();
+            if (value != 0) {
+                copy.put(key, value);
+            }
+        });
+        return copy;
+    }
+}
@@ -2,10 +2,12 @@ package services;
 
 import enums.Priority;
 import enums.Status;
+import indexes.TextIndex;
 import models.Task;
 import models.User;
 import repositories.TaskRepository;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
@@ -15,43 +17,46 @@ import java.util.stream.Collectors;
 public class TaskSearchService {
 
     private final TaskRepository taskRepository;
+    private final TextIndex textIndex; // null: text queries are unavailable
 
     public TaskSearchService(TaskRepository taskRepository) {
+        this(taskRepository, null);
+    }
+
+    // Pass TaskService.getTextIndex() to enable text search
+    public TaskSearchService(TaskRepository taskRepository, TextIndex textIndex) {
         this.taskRepository = taskRepository;
+        this.textIndex = textIndex;
     }
 
     // ---------------- Internal Helper ----------------
     // Always work on latest task versions only
     private List<Task> latestTasks() {
-        return taskRepository.findAll().stream()
-                .collect(Collectors.groupingBy(
-                        Task::getId,
-                        Collectors.maxBy(Comparator.comparingInt(Task::getVersion))
-                ))
-                .values().stream()
-                .flatMap(Optional::stream)
-                .collect(Collectors.toList());
+        return taskRepository.findAllLatest();
     }
 
     // ---------------- 3.1 Filter by Status ----------------
     public List<Task> filterByStatus(Set<Status> statuses) {
-        return latestTasks().stream()
-                .filter(t -> statuses.contains(t.getStatus()))
-                .collect(Collectors.toList());
+        return taskRepository.findLatestByStatuses(statuses);
     }
 
     // ---------------- 3.2 Filter by Priority ----------------
     public List<Task> filterByPriority(Set<Priority> priorities) {
-        return latestTasks().stream()
-                .filter(t -> priorities.contains(t.getPriority()))
-                .collect(Collectors.toList());
+        return taskRepository.findLatestByPriorities(priorities);
     }
 
     // ---------------- 3.3 Filter by Assignee ----------------
+    // Grouped by user id; the key is the assignee as seen on that user's first task
     public Map<User, List<Task>> filterByAssignee() {
-        return latestTasks().stream()
-                .filter(t -> t.getAssignedTo().isPresent())
-                .collect(Collectors.groupingBy(t -> t.getAssignedTo().get()));
+        Map<User, List<Task>> result = new LinkedHashMap<>();
+        for (List<Task> tasks : taskRepository.findLatestGroupedByAssignee().values()) {
+            result.put(tasks.get(0).getAssignedTo().get(), tasks);
+        }
+        return result;
+    }
+
+    public List<Task> filterByAssignee(UUID userId) {
+        return taskRepository.findLatestByAssignee(userId);
     }
 
     // ---------------- 3.4 Filter by Creator ----------------
@@ -66,46 +71,30 @@ public class TaskSearchService {
 
         Instant now = Instant.now();
 
-        return latestTasks().stream()
-                .filter(t -> t.getDueDate().isPresent())
-                .filter(t -> t.getDueDate().get().isBefore(now))
-                .filter(t -> t.getStatus() != Status.COMPLETED
-                        && t.getStatus() != Status.CANCELLED)
-                .collect(Collectors.toMap(
-                        t -> t,
-                        t -> ChronoUnit.DAYS.between(
-                                t.getDueDate().get(), now)
-                ));
+        Map<Task, Long> result = new LinkedHashMap<>();
+        for (Task t : taskRepository.findOverdue(now)) {
+            result.put(t, ChronoUnit.DAYS.between(t.getDueDate().get(), now));
+        }
+        return result;
     }
 
     // ---------------- 3.6 Filter by Date Range ----------------
     public List<Task> createdBetween(Instant from, Instant to) {
-        return latestTasks().stream()
-                .filter(t -> !t.getCreatedAt().isBefore(from)
-                        && !t.getCreatedAt().isAfter(to))
-                .collect(Collectors.toList());
+        return taskRepository.findCreatedBetween(from, to);
     }
 
+    // Range over the time each task moved to COMPLETED
     public List<Task> completedBetween(Instant from, Instant to) {
-        return latestTasks().stream()
-                .filter(t -> t.getStatus() == Status.COMPLETED)
-                .filter(t -> !t.getUpdatedAt().isBefore(from)
-                        && !t.getUpdatedAt().isAfter(to))
-                .collect(Collectors.toList());
+        return taskRepository.findCompletedBetween(from, to);
     }
 
     public List<Task> modifiedBetween(Instant from, Instant to) {
-        return latestTasks().stream()
-                .filter(t -> !t.getUpdatedAt().isBefore(from)
-                        && !t.getUpdatedAt().isAfter(to))
-                .collect(Collectors.toList());
+        return taskRepository.findModifiedBetween(from, to);
     }
 
     // ---------------- 3.7 Filter by Tags ----------------
     public List<Task> filterByTags(Set<String> tags) {
-        return latestTasks().stream()
-                .filter(t -> t.getTags().containsAll(tags))
-                .collect(Collectors.toList());
+        return taskRepository.findLatestByTags(tags);
     }
 
     // ---------------- 3.8 Combined Filters ----------------
@@ -116,26 +105,89 @@ public class TaskSearchService {
             boolean overdueOnly,
             Set<String> tags
     ) {
+        return combinedFilter(statuses, priorities, assignee, overdueOnly, tags, null);
+    }
 
-        Predicate<Task> predicate = t -> true;
+    // With a text query the result holds only matching tasks, best match first
+    public List<Task> combinedFilter(
+            Set<Status> statuses,
+            Set<Priority> priorities,
+            User assignee,
+            boolean overdueOnly,
+            Set<String> tags,
+            String text
+    ) {
+        List<Task> result = new ArrayList<>();
+        planAndRun(statuses, priorities, assignee, overdueOnly, tags, text, result);
+        return result;
+    }
+
+    // Runs the same query and reports the plan chosen, rows scanned and rows returned
+    public QueryPlan explainCombinedFilter(
+            Set<Status> statuses,
+            Set<Priority> priorities,
+            User assignee,
+            boolean overdueOnly,
+            Set<String> tags
+    ) {
+        return explainCombinedFilter(statuses, priorities, assignee, overdueOnly, tags, null);
+    }
+
+    public QueryPlan explainCombinedFilter(
+            Set<Status> statuses,
+            Set<Priority> priorities,
+            User assignee,
+            boolean overdueOnly,
+            Set<String> tags,
+            String text
+    ) {
+        return planAndRun(statuses, priorities, assignee, overdueOnly, tags, text, new ArrayList<>());
+    }
+
+    // Estimates each clause from its index, drives the query from the smallest
+    // candidate set and applies the remaining clauses as residual filters. Status and
+    // priority together are also a candidate driver: the exact bitset intersection of
+    // both indexes, which covers both clauses. A text clause is applied last when
+    // residual, scoring only the rows that survived the others.
+    private QueryPlan planAndRun(
+            Set<Status> statuses,
+            Set<Priority> priorities,
+            User assignee,
+            boolean overdueOnly,
+            Set<String> tags,
+            String text,
+            List<Task> out
+    ) {
+        Instant now = Instant.now();
+
+        Map<String, Integer> estimates = new LinkedHashMap<>();
+        Map<String, Predicate<Task>> filters = new LinkedHashMap<>();
 
         if (statuses != null && !statuses.isEmpty()) {
-            predicate = predicate.and(t -> statuses.contains(t.getStatus()));
+            estimates.put("status", taskRepository.countByStatuses(statuses));
+            filters.put("status", t -> statuses.contains(t.getStatus()));
         }
 
         if (priorities != null && !priorities.isEmpty()) {
-            predicate = predicate.and(t -> priorities.contains(t.getPriority()));
+            estimates.put("priority", taskRepository.countByPriorities(priorities));
+            filters.put("priority", t -> priorities.contains(t.getPriority()));
+        }
+
+        boolean statusAndPriority = filters.containsKey("status") && filters.containsKey("priority");
+        if (statusAndPriority) {
+            estimates.put("status+priority", taskRepository.countByStatusesAndPriorities(statuses, priorities));
         }
 
         if (assignee != null) {
-            predicate = predicate.and(t ->
+            estimates.put("assignee", taskRepository.countByAssignee(assignee.getId()));
+            filters.put("assignee", t ->
                     t.getAssignedTo().isPresent()
                             && t.getAssignedTo().get().getId().equals(assignee.getId()));
         }
 
         if (overdueOnly) {
-            Instant now = Instant.now();
-            predicate = predicate.and(t ->
+            estimates.put("overdue", taskRepository.countOverdue(now));
+            filters.put("overdue", t ->
                     t.getDueDate().isPresent()
                             && t.getDueDate().get().isBefore(now)
                             && t.getStatus() != Status.COMPLETED
@@ -143,12 +195,113 @@ public class TaskSearchService {
         }
 
         if (tags != null && !tags.isEmpty()) {
-            predicate = predicate.and(t -> t.getTags().containsAll(tags));
+            estimates.put("tags", taskRepository.estimateByTags(tags));
+            filters.put("tags", t -> t.getTags().containsAll(tags));
         }
 
-        return latestTasks().stream()
-                .filter(predicate)
-                .collect(Collectors.toList());
+        boolean hasText = text != null && !text.isBlank();
+        if (hasText) {
+            estimates.put("text", requireTextIndex().estimate(text));
+        }
+
+        // the intersection wins ties with status or priority alone: it leaves no residual
+        String driver = "scan";
+        int best = taskRepository.countLatest();
+        for (Map.Entry<String, Integer> e : estimates.entrySet()) {
+            if (e.getValue() < best || e.getValue() == best && e.getKey().equals("status+priority")) {
+                driver = e.getKey();
+                best = e.getValue();
+            }
+        }
+
+        Map<UUID, Double> textScores = null;
+        List<Task> candidates;
+        switch (driver) {
+            case "text":
+                textScores = textIndex.searchAll(text);
+                candidates = resolve(textScores.keySet());
+                break;
+            case "status":
+                candidates = taskRepository.findLatestByStatuses(statuses);
+                break;
+            case "priority":
+                candidates = taskRepository.findLatestByPriorities(priorities);
+                break;
+            case "status+priority":
+                candidates = taskRepository.findLatestByStatusesAndPriorities(statuses, priorities);
+                break;
+            case "assignee":
+                candidates = taskRepository.findLatestByAssignee(assignee.getId());
+                break;
+            case "overdue":
+                candidates = taskRepository.findOverdue(now);
+                break;
+            case "tags":
+                candidates = taskRepository.findLatestByTags(tags);
+                break;
+            default:
+                candidates = latestTasks();
+        }
+
+        List<String> residuals = new ArrayList<>();
+        Predicate<Task> predicate = t -> true;
+        for (Map.Entry<String, Predicate<Task>> e : filters.entrySet()) {
+            boolean covered = e.getKey().equals(driver)
+                    || driver.equals("status+priority")
+                    && (e.getKey().equals("status") || e.getKey().equals("priority"));
+            if (!covered) {
+                residuals.add(e.getKey());
+                predicate = predicate.and(e.getValue());
+            }
+        }
+
+        for (Task t : candidates) {
+            if (predicate.test(t)) {
+                out.add(t);
+            }
+        }
+
+        if (hasText) {
+            if (textScores == null) {
+                residuals.add("text");
+                List<UUID> ids = new ArrayList<>(out.size());
+                for (Task t : out) {
+                    ids.add(t.getId());
+                }
+                Map<UUID, Double> scores = textIndex.score(text, ids);
+                out.removeIf(t -> !scores.containsKey(t.getId()));
+                out.sort(Comparator.comparing((Task t) -> scores.get(t.getId())).reversed());
+            }
+            // a text driver's candidates are already ranked
+        }
+
+        return new QueryPlan(driver, estimates, residuals, candidates.size(), out.size());
+    }
+
+    // ---------------- 3.11 Text Search ----------------
+    // Tasks whose title, description or comments contain every query word, best match
+    // first. A word ending in '*' matches as a prefix ("deploy*").
+    public List<Task> search(String query, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        return resolve(requireTextIndex().search(query, limit).keySet());
+    }
+
+    // Latest versions of the given ids, in the given order
+    private List<Task> resolve(Collection<UUID> ids) {
+        List<Task> tasks = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            taskRepository.findLatestById(id).ifPresent(tasks::add);
+        }
+        return tasks;
+    }
+
+    private TextIndex requireTextIndex() {
+        if (textIndex == null) {
+            throw new IllegalStateException("Text search needs a TaskSearchService built with a TextIndex");
+        }
+        return textIndex;
     }
 
     // ---------------- 3.9 Sorting ----------------
@@ -186,4 +339,117 @@ public class TaskSearchService {
                 .sorted(comparator)
                 .collect(Collectors.toList());
     }
+
+    // ---------------- 3.10 Top-K / Paged Sorting ----------------
+    // Returns the first `limit` tasks after `cursor` (null for the first page) in the
+    // requested order. Ties are broken by task id so the order is total and the cursor
+    // is a stable keyset position. Keeps a bounded heap of `limit` entries.
+    public Page<Task> sortTasks(
+            List<Task> tasks,
+            String sortBy,
+            boolean ascending,
+            int limit,
+            String cursor
+    ) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+
+        String key = sortBy.toLowerCase();
+        Comparator<SortKey> order = ascending ? SortKey.ORDER : SortKey.ORDER.reversed();
+        SortKey after = cursor == null ? null : SortKey.decode(cursor, key, ascending);
+
+        // Max-heap on the requested order: the head is the worst row kept so far
+        PriorityQueue<Map.Entry<SortKey, Task>> heap =
+                new PriorityQueue<>(limit + 1, Map.Entry.<SortKey, Task>comparingByKey(order).reversed());
+
+        for (Task t : tasks) {
+            SortKey k = SortKey.of(t, key);
+            if (after != null && order.compare(k, after) <= 0) {
+                continue;
+            }
+            if (heap.size() < limit) {
+                heap.add(Map.entry(k, t));
+            } else if (order.compare(k, heap.peek().getKey()) < 0) {
+                heap.poll();
+                heap.add(Map.entry(k, t));
+            }
+        }
+
+        List<Map.Entry<SortKey, Task>> rows = new ArrayList<>(heap);
+        rows.sort(Map.Entry.comparingByKey(order));
+
+        List<Task> page = new ArrayList<>(rows.size());
+        for (Map.Entry<SortKey, Task> row : rows) {
+            page.add(row.getValue());
+        }
+
+        String next = rows.size() < limit
+                ? null
+                : rows.get(rows.size() - 1).getKey().encode(key, ascending);
+        return new Page<>(page, next);
+    }
+
+    // Sort position of a task: two longs for the key plus the task id as tie-breaker
+    private static final class SortKey {
+
+        static final Comparator<SortKey> ORDER = Comparator
+                .<SortKey>comparingLong(k -> k.high)
+                .thenComparingLong(k -> k.low)
+                .thenComparing(k -> k.id);
+
+        private final long high;
+        private final long low;
+        private final UUID id;
+
+        private SortKey(long high, long low, UUID id) {
+            this.high = high;
+            this.low = low;
+            this.id = id;
+        }
+
+        static SortKey of(Task t, String sortBy) {
+            switch (sortBy) {
+                case "priority":
+                    return new SortKey(t.getPriority().ordinal(), 0, t.getId());
+                case "status":
+                    return new SortKey(t.getStatus().ordinal(), 0, t.getId());
+                case "duedate":
+                    return of(t.getDueDate().orElse(Instant.MAX), t.getId());
+                default:
+                    return of(t.getCreatedAt(), t.getId());
+            }
+        }
+
+        private static SortKey of(Instant instant, UUID id) {
+            return new SortKey(instant.getEpochSecond(), instant.getNano(), id);
+        }
+
+        String encode(String sortBy, boolean ascending) {
+            String raw = sortBy + "|" + ascending + "|" + high + "|" + low + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static SortKey decode(String cursor, String sortBy, boolean ascending) {
+            String[] parts;
+            try {
+                parts = new String(Base64.getUrlDecoder().decode(cursor),
+                        StandardCharsets.UTF_8).split("\\|");
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Malformed cursor", e);
+            }
+            if (parts.length != 5
+                    || !parts[0].equals(sortBy)
+                    || Boolean.parseBoolean(parts[1]) != ascending) {
+                throw new IllegalArgumentException("Cursor does not match sort order");
+            }
+            try {
+                return new SortKey(Long.parseLong(parts[2]), Long.parseLong(parts[3]),
+                        UUID.fromString(parts[4]));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Malformed cursor", e);
+            }
+        }
+    }
 }
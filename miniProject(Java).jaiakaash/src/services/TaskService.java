@@ -3,30 +3,156 @@ package services;
 import enums.ActivityType;
 import enums.Priority;
 import enums.Status;
+import indexes.TextIndex;
 import models.ActivityEvent;
 import models.Comment;
 import models.Task;
 import models.User;
-import repositories.ActivityEventRepository;
+import repositories.ActivityStore;
+import repositories.CommentRepository;
 import repositories.TaskRepository;
 import repositories.UserRepository;
+import repositories.VersionConflictException;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 
 public class TaskService {
 
     private final TaskRepository taskRepository;
-    private final ActivityEventRepository activityRepository;
+    private final ActivityRecorder activityRecorder;
+    private final CommentRepository commentRepository;
     private final UserRepository userRepository;
+    private final RetryPolicy retryPolicy;
+    private final TaskAggregates aggregates;
+    private final OverdueScheduler overdueScheduler;
+    private final TextIndex textIndex;
 
     public TaskService(TaskRepository taskRepository,
-                       ActivityEventRepository activityRepository,
+                       ActivityStore activityRepository,
                        UserRepository userRepository) {
-        this.taskRepository = taskRepository;
-        this.activityRepository = activityRepository;
-        this.userRepository = userRepository;
+        this(builder()
+                .taskRepository(taskRepository)
+                .activityRepository(activityRepository)
+                .userRepository(userRepository)
+                .validate());
+    }
+
+    private TaskService(Builder b) {
+        this.taskRepository = b.taskRepository;
+        this.activityRecorder = b.activityRecorder;
+        this.commentRepository = b.commentRepository;
+        this.userRepository = b.userRepository;
+        this.retryPolicy = b.retryPolicy;
+        this.aggregates = b.aggregates;
+        this.overdueScheduler = b.overdueScheduler;
+        this.textIndex = b.textIndex;
+    }
+
+    // ---------- Builder ----------
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private TaskRepository taskRepository;
+        private ActivityStore activityRepository;
+        private ActivityRecorder activityRecorder;
+        private CommentRepository commentRepository = new CommentRepository();
+        private UserRepository userRepository;
+        private RetryPolicy retryPolicy = RetryPolicy.defaultPolicy();
+        private TaskAggregates aggregates;
+        private OverdueScheduler overdueScheduler;
+        private TextIndex textIndex;
+
+        private Builder() {
+        }
+
+        public Builder taskRepository(TaskRepository taskRepository) {
+            this.taskRepository = taskRepository;
+            return this;
+        }
+
+        // Events are saved synchronously into this repository unless activityRecorder is set
+        public Builder activityRepository(ActivityStore activityRepository) {
+            this.activityRepository = activityRepository;
+            return this;
+        }
+
+        public Builder activityRecorder(ActivityRecorder activityRecorder) {
+            this.activityRecorder = activityRecorder;
+            return this;
+        }
+
+        public Builder commentRepository(CommentRepository commentRepository) {
+            this.commentRepository = commentRepository;
+            return this;
+        }
+
+        public Builder userRepository(UserRepository userRepository) {
+            this.userRepository = userRepository;
+            return this;
+        }
+
+        public Builder retryPolicy(RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        // Defaults to a scheduler armed from the task repository's current contents;
+        // it only turns when read or once started
+        public Builder overdueScheduler(OverdueScheduler overdueScheduler) {
+            this.overdueScheduler = overdueScheduler;
+            return this;
+        }
+
+        // Defaults to aggregates built from the task repository's current contents,
+        // fed by the overdue scheduler
+        public Builder aggregates(TaskAggregates aggregates) {
+            this.aggregates = aggregates;
+            return this;
+        }
+
+        // Defaults to an index of the repositories' current tasks and comments
+        public Builder textIndex(TextIndex textIndex) {
+            this.textIndex = textIndex;
+            return this;
+        }
+
+        public TaskService build() {
+            return new TaskService(validate());
+        }
+
+        private Builder validate() {
+            Objects.requireNonNull(taskRepository, "taskRepository is required");
+            Objects.requireNonNull(userRepository, "userRepository is required");
+            Objects.requireNonNull(commentRepository, "commentRepository is required");
+            Objects.requireNonNull(retryPolicy, "retryPolicy is required");
+
+            if (activityRecorder == null) {
+                Objects.requireNonNull(activityRepository,
+                        "activityRepository or activityRecorder is required");
+                activityRecorder = ActivityRecorder.synchronous(activityRepository);
+            }
+            if (overdueScheduler == null) {
+                overdueScheduler = OverdueScheduler.from(taskRepository);
+            }
+            if (aggregates == null) {
+                aggregates = TaskAggregates.from(taskRepository, overdueScheduler);
+            }
+            if (textIndex == null) {
+                textIndex = new TextIndex();
+                for (Task task : taskRepository.findAllLatest()) {
+                    textIndex.addTask(task.getId(), task.getTitle(), task.getDescription());
+                    for (Comment comment : commentRepository.findByTaskId(task.getId())) {
+                        textIndex.addComment(task.getId(), comment.getMessage());
+                    }
+                }
+            }
+            return this;
+        }
     }
 
     // ---------------- 2.1 Create Task ----------------
@@ -39,6 +165,8 @@ public class TaskService {
                 .build();
 
         taskRepository.save(task);
+        aggregates.onSaved(task);
+        textIndex.addTask(task.getId(), title, description);
 
         recordActivity(task.getId(), ActivityType.TASK_CREATED, creator, null);
 
@@ -60,141 +188,256 @@ public class TaskService {
                 put(Status.CANCELLED, Set.of());
             }};
 
-    public Task updateStatus(UUID taskId, Status newStatus, User actor) {
-
-        Task current = viewTask(taskId);
-
-        if (!ALLOWED_TRANSITIONS.get(current.getStatus()).contains(newStatus)) {
-            throw new IllegalStateException("Invalid status transition");
-        }
-
-        Task updated = cloneTask(current)
-                .status(newStatus)
-                .version(current.getVersion() + 1)
-                .updatedAt(Instant.now())
-                .build();
+    // Every mutator below has an overload taking expectedVersion: the update is applied
+    // only if the task is still at that version, otherwise VersionConflictException is
+    // thrown. Without it, conflicts with concurrent writers are retried per retryPolicy.
 
-        taskRepository.save(updated);
+    public Task updateStatus(UUID taskId, Status newStatus, User actor) {
+        return changeStatus(taskId, null, newStatus, actor);
+    }
 
-        recordActivity(taskId, ActivityType.STATUS_CHANGED, actor,
-                current.getStatus() + " -> " + newStatus);
+    public Task updateStatus(UUID taskId, Status newStatus, User actor, int expectedVersion) {
+        return changeStatus(taskId, expectedVersion, newStatus, actor);
+    }
 
+    // Completing or cancelling a task disarms its overdue timer
+    private Task changeStatus(UUID taskId, Integer expectedVersion, Status newStatus, User actor) {
+        Task updated = update(taskId, expectedVersion,
+                current -> {
+                    if (!ALLOWED_TRANSITIONS.get(current.getStatus()).contains(newStatus)) {
+                        throw new IllegalStateException("Invalid status transition");
+                    }
+                    return cloneTask(current).status(newStatus);
+                },
+                ActivityType.STATUS_CHANGED, actor,
+                current -> current.getStatus() + " -> " + newStatus);
+        overdueScheduler.track(updated);
         return updated;
     }
 
     // ---------------- 2.4 Assign / Unassign ----------------
     public Task assignTask(UUID taskId, UUID userId, User actor) {
+        return changeAssignee(taskId, null, userId, actor);
+    }
 
-        Task current = viewTask(taskId);
+    public Task assignTask(UUID taskId, UUID userId, User actor, int expectedVersion) {
+        return changeAssignee(taskId, expectedVersion, userId, actor);
+    }
+
+    private Task changeAssignee(UUID taskId, Integer expectedVersion, UUID userId, User actor) {
 
         User assignee = userRepository.findById(userId)
                 .orElseThrow(() -> new NoSuchElementException("User not found"));
 
-        Task updated = cloneTask(current)
-                .assignedTo(assignee)
-                .version(current.getVersion() + 1)
-                .updatedAt(Instant.now())
-                .build();
-
-        taskRepository.save(updated);
-
-        recordActivity(taskId, ActivityType.ASSIGNEE_CHANGED, actor,
-                "Assigned to " + assignee.getEmail());
-
-        return updated;
+        return update(taskId, expectedVersion,
+                current -> cloneTask(current).assignedTo(assignee),
+                ActivityType.ASSIGNEE_CHANGED, actor,
+                current -> "Assigned to " + assignee.getEmail());
     }
 
     public Task unassignTask(UUID taskId, User actor) {
+        return removeAssignee(taskId, null, actor);
+    }
 
-        Task current = viewTask(taskId);
-
-        Task updated = cloneTask(current)
-                .assignedTo(null)
-                .version(current.getVersion() + 1)
-                .updatedAt(Instant.now())
-                .build();
-
-        taskRepository.save(updated);
-
-        recordActivity(taskId, ActivityType.ASSIGNEE_CHANGED, actor, "Unassigned");
+    public Task unassignTask(UUID taskId, User actor, int expectedVersion) {
+        return removeAssignee(taskId, expectedVersion, actor);
+    }
 
-        return updated;
+    private Task removeAssignee(UUID taskId, Integer expectedVersion, User actor) {
+        return update(taskId, expectedVersion,
+                current -> cloneTask(current).assignedTo(null),
+                ActivityType.ASSIGNEE_CHANGED, actor,
+                current -> "Unassigned");
     }
 
     // ---------------- 2.5 Update Priority ----------------
     public Task updatePriority(UUID taskId, Priority priority, User actor) {
+        return changePriority(taskId, null, priority, actor);
+    }
 
-        Task current = viewTask(taskId);
-
-        Task updated = cloneTask(current)
-                .priority(priority)
-                .version(current.getVersion() + 1)
-                .updatedAt(Instant.now())
-                .build();
-
-        taskRepository.save(updated);
-
-        recordActivity(taskId, ActivityType.PRIORITY_CHANGED, actor,
-                current.getPriority() + " -> " + priority);
+    public Task updatePriority(UUID taskId, Priority priority, User actor, int expectedVersion) {
+        return changePriority(taskId, expectedVersion, priority, actor);
+    }
 
-        return updated;
+    private Task changePriority(UUID taskId, Integer expectedVersion, Priority priority, User actor) {
+        return update(taskId, expectedVersion,
+                current -> cloneTask(current).priority(priority),
+                ActivityType.PRIORITY_CHANGED, actor,
+                current -> current.getPriority() + " -> " + priority);
     }
 
     // ---------------- 2.6 Update Due Date ----------------
     public Task updateDueDate(UUID taskId, Instant dueDate, User actor) {
+        return changeDueDate(taskId, null, dueDate, actor);
+    }
 
-        Task current = viewTask(taskId);
-
-        Task updated = cloneTask(current)
-                .dueDate(dueDate)
-                .version(current.getVersion() + 1)
-                .updatedAt(Instant.now())
-                .build();
-
-        taskRepository.save(updated);
-
-        recordActivity(taskId, ActivityType.DUE_DATE_CHANGED, actor,
-                dueDate == null ? "Deadline removed" : dueDate.toString());
+    public Task updateDueDate(UUID taskId, Instant dueDate, User actor, int expectedVersion) {
+        return changeDueDate(taskId, expectedVersion, dueDate, actor);
+    }
 
+    // Re-arms the task's overdue timer for the new due date (or disarms it)
+    private Task changeDueDate(UUID taskId, Integer expectedVersion, Instant dueDate, User actor) {
+        Task updated = update(taskId, expectedVersion,
+                current -> cloneTask(current).dueDate(dueDate),
+                ActivityType.DUE_DATE_CHANGED, actor,
+                current -> dueDate == null ? "Deadline removed" : dueDate.toString());
+        overdueScheduler.track(updated);
         return updated;
     }
 
     // ---------------- 2.7 Add Comment ----------------
     public Task addComment(UUID taskId, String text, User author) {
+        return appendComment(taskId, null, text, author);
+    }
+
+    public Task addComment(UUID taskId, String text, User author, int expectedVersion) {
+        return appendComment(taskId, expectedVersion, text, author);
+    }
 
-        Task current = viewTask(taskId);
+    // The comment goes to the task's comment log; the new version only bumps commentCount.
+    // The comment is appended under the task's lock, only once the version that counts it
+    // is in the log, so a failed update leaves no comment behind.
+    private Task appendComment(UUID taskId, Integer expectedVersion, String text, User author) {
 
         Comment comment = Comment.builder()
                 .author(author)
                 .message(text)
                 .build();
 
-        List<Comment> comments = new ArrayList<>(current.getComments());
-        comments.add(comment);
+        Task updated = update(taskId, expectedVersion,
+                current -> cloneTask(current).commentCount(current.getCommentCount() + 1),
+                ActivityType.COMMENT_ADDED, author,
+                current -> text,
+                () -> commentRepository.save(taskId, comment));
 
-        Task updated = cloneTask(current)
-                .comments(comments)
-                .version(current.getVersion() + 1)
-                .updatedAt(Instant.now())
-                .build();
+        textIndex.addComment(taskId, text);
 
-        taskRepository.save(updated);
+        return updated;
+    }
 
-        recordActivity(taskId, ActivityType.COMMENT_ADDED, author, text);
+    // Newest first. Pass the previous page's cursor to continue, or null to start.
+    public Page<Comment> viewComments(UUID taskId, int limit, String cursor) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
 
-        return updated;
+        // the head version's commentCount is the watermark of comments it has committed
+        int before = cursor == null
+                ? viewTask(taskId).getCommentCount()
+                : decodeCommentCursor(cursor);
+
+        List<Comment> page = commentRepository.findNewestBefore(taskId, before, limit);
+        int oldest = before - page.size();
+        String next = oldest > 0 && !page.isEmpty() ? encodeCommentCursor(oldest) : null;
+        return new Page<>(page, next);
+    }
+
+    private static String encodeCommentCursor(int position) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("c" + position).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int decodeCommentCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int position = raw.startsWith("c") ? Integer.parseInt(raw.substring(1)) : -1;
+            if (position >= 0) {
+                return position;
+            }
+        } catch (IllegalArgumentException e) {
+            // not Base64 or not a number
+        }
+        throw new IllegalArgumentException("Malformed cursor");
     }
 
     // ---------------- 2.8 View Task History ----------------
     public List<Task> viewTaskHistory(UUID taskId) {
 
-        return taskRepository.findAllVersions(taskId)
-                .stream()
-                .sorted(Comparator.comparingInt(Task::getVersion).reversed())
-                .collect(Collectors.toList());
+        List<Task> history = taskRepository.findAllVersions(taskId);
+        Collections.reverse(history);
+        return history;
+    }
+
+    // ---------------- Aggregates ----------------
+    // Live counts over the latest task versions, updated on every save
+    public TaskAggregates getAggregates() {
+        return aggregates;
+    }
+
+    // Titles, descriptions and comments, for TaskSearchService text queries
+    public TextIndex getTextIndex() {
+        return textIndex;
+    }
+
+    // Register listeners here to hear when tasks become overdue
+    public OverdueScheduler getOverdueScheduler() {
+        return overdueScheduler;
     }
 
     // ---------------- Helpers ----------------
+    // Read-modify-write of a task as a compare-and-set on its version.
+    // expectedVersion == null means "latest": conflicts are retried per retryPolicy.
+    private Task update(UUID taskId,
+                        Integer expectedVersion,
+                        Function<Task, Task.Builder> change,
+                        ActivityType type,
+                        User actor,
+                        Function<Task, String> details) {
+        return update(taskId, expectedVersion, change, type, actor, details, null);
+    }
+
+    // afterLog runs under the task's lock once the version is logged (see TaskRepository.save)
+    private Task update(UUID taskId,
+                        Integer expectedVersion,
+                        Function<Task, Task.Builder> change,
+                        ActivityType type,
+                        User actor,
+                        Function<Task, String> details,
+                        Runnable afterLog) {
+
+        for (int attempt = 1; ; attempt++) {
+
+            Task current = viewTask(taskId);
+
+            if (expectedVersion != null && current.getVersion() != expectedVersion) {
+                throw new VersionConflictException(taskId, expectedVersion, current.getVersion());
+            }
+
+            Task updated = change.apply(current)
+                    .version(current.getVersion() + 1)
+                    .updatedAt(Instant.now())
+                    .build();
+
+            try {
+                taskRepository.save(updated, afterLog);
+            } catch (VersionConflictException e) {
+                if (expectedVersion != null || attempt >= retryPolicy.getMaxAttempts()) {
+                    throw e;
+                }
+                backoff(attempt);
+                continue;
+            }
+            aggregates.onSaved(updated);
+
+            recordActivity(taskId, type, actor, details.apply(current));
+
+            return updated;
+        }
+    }
+
+    private void backoff(int attempt) {
+        long millis = attempt * retryPolicy.getBackoffMillis();
+        if (millis == 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying task update", e);
+        }
+    }
+
     private Task.Builder cloneTask(Task t) {
         return Task.builder()
                 .id(t.getId())
@@ -207,7 +450,7 @@ public class TaskService {
                 .assignedTo(t.getAssignedTo().orElse(null))
                 .dueDate(t.getDueDate().orElse(null))
                 .tags(t.getTags())
-                .comments(t.getComments())
+                .commentCount(t.getCommentCount())
                 .createdAt(t.getCreatedAt());
     }
 
@@ -223,6 +466,6 @@ public class TaskService {
                 .details(details)
                 .build();
 
-        activityRepository.save(event);
+        activityRecorder.record(event);
     }
 }
@@ -1,26 +1,27 @@
 package services;
 
 import enums.Role;
-import enums.Status;
-import models.Task;
 import models.User;
+import repositories.TaskRepository;
 import repositories.UserRepository;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 public class UserService {
 
     private final UserRepository userRepository;
-    private final List<Task> tasks;
+    private final TaskRepository taskRepository;
 
     private static final Pattern EMAIL_PATTERN =
             Pattern.compile("^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+$");
 
-    public UserService(UserRepository userRepository, List<Task> tasks) {
+    public UserService(UserRepository userRepository, TaskRepository taskRepository) {
         this.userRepository = userRepository;
-        this.tasks = tasks;
+        this.taskRepository = taskRepository;
     }
 
     // 1.1 Create User
@@ -42,21 +43,72 @@ public class UserService {
 
     // 1.3 List All Users with sorting
     public List<User> listUsers(String sortBy) {
+        return userRepository.findSorted(sortOrder(sortBy), null, Integer.MAX_VALUE);
+    }
+
+    // Paged listing: the first `limit` users after `cursor` (null for the first page).
+    // Reads the repository's presorted view, so a page costs O(log n + limit).
+    public Page<User> listUsers(String sortBy, int limit, String cursor) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+
+        UserRepository.SortOrder order = sortOrder(sortBy);
+        User after = cursor == null ? null : decodeCursor(cursor, order);
 
-        Comparator<User> comparator = switch (sortBy.toLowerCase()) {
-            case "name" -> Comparator.comparing(User::getName, String.CASE_INSENSITIVE_ORDER);
-            case "email" -> Comparator.comparing(User::getEmail, String.CASE_INSENSITIVE_ORDER);
-            case "role" -> Comparator.comparing(u -> u.getRole().name());
-            default -> Comparator.comparing(User::getCreatedAt);
+        List<User> page = userRepository.findSorted(order, after, limit);
+        String next = page.size() < limit ? null : encodeCursor(page.get(page.size() - 1), order);
+        return new Page<>(page, next);
+    }
+
+    private static UserRepository.SortOrder sortOrder(String sortBy) {
+        return switch (sortBy.toLowerCase()) {
+            case "name" -> UserRepository.SortOrder.NAME;
+            case "email" -> UserRepository.SortOrder.EMAIL;
+            case "role" -> UserRepository.SortOrder.ROLE;
+            default -> UserRepository.SortOrder.CREATED_AT;
         };
+    }
 
-        List<User> users = userRepository.findAll()
-                .stream()
-                .sorted(comparator)
-                .collect(Collectors.toList());
+    // Cursor: order|id|key, where key is the sort field of the last user returned
+    // ("-" for null, otherwise "=" followed by the value)
+    private static String encodeCursor(User last, UserRepository.SortOrder order) {
+        Object key = switch (order) {
+            case NAME -> last.getName();
+            case EMAIL -> last.getEmail();
+            case ROLE -> last.getRole();
+            case CREATED_AT -> last.getCreatedAt();
+        };
+        String raw = order + "|" + last.getId() + "|" + (key == null ? "-" : "=" + key);
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
 
-        System.out.println("Total users: " + users.size());
-        return users;
+    // Rebuilds a probe user carrying just the id and the sort field
+    private static User decodeCursor(String cursor, UserRepository.SortOrder order) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor),
+                    StandardCharsets.UTF_8).split("\\|", 3);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+        if (parts.length != 3 || !parts[0].equals(order.name())) {
+            throw new IllegalArgumentException("Cursor does not match sort order");
+        }
+        try {
+            String key = parts[2].startsWith("=") ? parts[2].substring(1) : null;
+            User.Builder probe = User.builder().id(UUID.fromString(parts[1]));
+            switch (order) {
+                case NAME -> probe.name(key);
+                case EMAIL -> probe.email(key);
+                case ROLE -> probe.role(key == null ? null : Role.valueOf(key));
+                case CREATED_AT -> probe.createdAt(key == null ? null : Instant.parse(key));
+            }
+            return probe.build();
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
     }
 
     // 1.4 Update User
@@ -77,15 +129,7 @@ public class UserService {
 
         User user = getUserById(userId);
 
-        boolean hasActiveTasks = tasks.stream()
-                .filter(t -> t.getAssignedTo().isPresent())
-                .anyMatch(t ->
-                        t.getAssignedTo().get().getId().equals(userId)
-                                && (t.getStatus() == Status.OPEN
-                                || t.getStatus() == Status.IN_PROGRESS)
-                );
-
-        if (hasActiveTasks) {
+        if (taskRepository.hasActiveTasks(userId)) {
             throw new IllegalStateException("User has active assigned tasks");
         }
 